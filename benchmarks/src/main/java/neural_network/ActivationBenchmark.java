@@ -0,0 +1,86 @@
+package neural_network;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of transfer functions alone and of inference with each of them.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ActivationBenchmark {
+    private static final int VALUES = 1024;
+
+    @Param({ "exact", "lookup", "rational" })
+    public String activation;
+
+    @Param({ "20x5x3x5", "20x64x32x5" })
+    public String architecture;
+
+    private Activation function;
+    private double[] nets;
+    private TrainedModel model;
+    private double[] input;
+    private double[] output;
+
+    @Setup
+    public void setUp() {
+        if (activation.equals("lookup")) {
+            function = new LookupSigmoidActivation();
+        } else if (activation.equals("rational")) {
+            function = new RationalSigmoidActivation();
+        } else {
+            function = new SigmoidActivation();
+        }
+        Random random = new Random(1);
+        nets = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            nets[i] = 20 * random.nextDouble() - 10;
+        }
+
+        String[] arch = architecture.split("x");
+        int[] sizes = new int[arch.length];
+        for (int k = 0; k < arch.length; k++) {
+            sizes[k] = Integer.parseInt(arch[k]);
+        }
+        FlatNetwork net = new FlatNetwork(sizes, function);
+        net.initialize(WeightInitialization.UNIFORM, random);
+        model = new TrainedModel(net, sizes[0] / 2);
+        input = Samples.create(1, sizes[0], sizes[sizes.length - 1], 2).x;
+        output = new double[model.outputSize()];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(VALUES)
+    public double apply() {
+        double sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += function.apply(nets[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int infer() {
+        return model.infer(input, output);
+    }
+}
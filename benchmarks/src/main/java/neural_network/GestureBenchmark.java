@@ -0,0 +1,56 @@
+package neural_network;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import neural_network.gesture.DecimalPoint;
+import neural_network.gesture.GestureProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Normalization of a gesture to its representation.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GestureBenchmark {
+    // number of points of the stroke
+    @Param({ "50", "500", "5000" })
+    public int points;
+
+    private GestureProcessor gp;
+    private ArrayList<Point> stroke;
+
+    @Setup
+    public void setUp() {
+        gp = new GestureProcessor();
+        stroke = new ArrayList<Point>();
+        // spiral, like a fast drawn alpha
+        for (int i = 0; i < points; i++) {
+            double a = 6 * Math.PI * i / points;
+            double r = 50 + 100.0 * i / points;
+            stroke.add(new Point(400 + (int) (r * Math.cos(a)),
+                    300 + (int) (r * Math.sin(a))));
+        }
+    }
+
+    @Benchmark
+    public ArrayList<DecimalPoint> getRepresentation() {
+        return gp.getRepresentation(stroke);
+    }
+}
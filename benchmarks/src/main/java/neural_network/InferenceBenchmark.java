@@ -0,0 +1,94 @@
+package neural_network;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-sample inference latency of double, float and int8 models and batch
+ * inference throughput of a network with random weights.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InferenceBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({ "20x5x3x5", "20x64x32x5", "20x512x256x5" })
+    public String architecture;
+
+    private TrainedModel model;
+    private FloatModel floatModel;
+    private QuantizedModel quantizedModel;
+    private double[] input;
+    private double[] output;
+    private double[] batch;
+    private int[] classes;
+    private double[] probabilities;
+
+    @Setup
+    public void setUp() {
+        String[] arch = architecture.split("x");
+        int[] sizes = new int[arch.length];
+        for (int k = 0; k < arch.length; k++) {
+            sizes[k] = Integer.parseInt(arch[k]);
+        }
+        FlatNetwork net = new FlatNetwork(sizes);
+        net.initialize(WeightInitialization.UNIFORM, new Random(1));
+        model = new TrainedModel(net, sizes[0] / 2);
+        floatModel = model.toFloatModel();
+        quantizedModel = model.quantize();
+
+        Dataset samples = Samples.create(BATCH, sizes[0],
+                sizes[sizes.length - 1], 2);
+        batch = samples.x;
+        input = new double[sizes[0]];
+        System.arraycopy(batch, 0, input, 0, input.length);
+        output = new double[model.outputSize()];
+        classes = new int[BATCH];
+        probabilities = new double[BATCH * model.outputSize()];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int inferSample() {
+        return model.infer(input, output);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int inferSampleFloat() {
+        return floatModel.infer(input, output);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int inferSampleInt8() {
+        return quantizedModel.infer(input, output);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public int[] inferBatch() {
+        model.inferBatch(batch, BATCH, classes, probabilities);
+        return classes;
+    }
+}
@@ -0,0 +1,59 @@
+package neural_network;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading of text and binary sample files.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SampleLoadingBenchmark {
+    @Param({ "1000", "100000" })
+    public int samples;
+
+    private Path text;
+    private Path binary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Dataset dataset = Samples.create(samples, 20, 5, 1);
+        text = Samples.writeText(dataset);
+        binary = Samples.writeBinary(dataset);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(text);
+        Files.deleteIfExists(binary);
+    }
+
+    @Benchmark
+    public Dataset loadText() throws Exception {
+        return SampleLoader.load(text.toString(), 20, 5);
+    }
+
+    @Benchmark
+    public Dataset loadBinary() throws Exception {
+        return SampleLoader.load(binary.toString(), 20, 5);
+    }
+}
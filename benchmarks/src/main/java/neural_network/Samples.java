@@ -0,0 +1,55 @@
+package neural_network;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Synthetic samples shaped like the gesture samples, inputs are in [-1, 1]
+ * and exactly one expected output is 1.
+ */
+class Samples {
+    private Samples() {
+    }
+
+    static Dataset create(int rows, int inputs, int outputs, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[rows * inputs];
+        double[] t = new double[rows * outputs];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = 2 * random.nextDouble() - 1;
+        }
+        for (int r = 0; r < rows; r++) {
+            t[r * outputs + random.nextInt(outputs)] = 1;
+        }
+        return new Dataset(x, t, rows, inputs, outputs);
+    }
+
+    static Path writeText(Dataset dataset) throws IOException {
+        Path file = Files.createTempFile("samples", ".txt");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter out = Files.newBufferedWriter(file,
+                StandardCharsets.US_ASCII)) {
+            for (int r = 0; r < dataset.rows; r++) {
+                out.write("\n");
+                for (int i = 0; i < dataset.inputs; i++) {
+                    out.write(" " + dataset.x[r * dataset.inputs + i]);
+                }
+                for (int i = 0; i < dataset.outputs; i++) {
+                    out.write(" " + (int) dataset.t[r * dataset.outputs + i]);
+                }
+            }
+        }
+        return file;
+    }
+
+    static Path writeBinary(Dataset dataset) throws IOException {
+        Path file = Files.createTempFile("samples", ".bin");
+        file.toFile().deleteOnExit();
+        SampleLoader.saveBinary(dataset, file.toString());
+        return file;
+    }
+}
@@ -0,0 +1,81 @@
+package neural_network;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of one training epoch for every algorithm, architecture, number of
+ * workers and optimizer.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrainingBenchmark {
+    private static final int SAMPLES = 2000;
+
+    @Param({ "20x5x3x5", "20x64x32x5", "20x512x256x5" })
+    public String architecture;
+
+    // 0 - backpropagation, 1 - stohastic, 2 - mini-batch, 3 - asynchronous
+    @Param({ "0", "1", "2", "3" })
+    public int algorithm;
+
+    @Param({ "1", "4" })
+    public int workers;
+
+    @Param({ "sgd", "adam" })
+    public String optimizer;
+
+    private NeuralNetwork nn;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] arch = architecture.split("x");
+        int inputs = Integer.parseInt(arch[0]);
+        int outputs = Integer.parseInt(arch[arch.length - 1]);
+        file = Samples.writeBinary(Samples.create(SAMPLES, inputs, outputs, 1));
+
+        nn = NeuralNetwork.getInstance();
+        nn.setParallelism(workers);
+        nn.setOptimizer(Optimizer.forName(optimizer), new ConstantSchedule());
+        // same initial weights and sample order in every run
+        nn.setSeed(1L);
+        // learning rate is kept low so weights stay in a realistic range
+        nn.initialize(Integer.toString(inputs / 2), architecture, "0.001",
+                "0");
+        nn.loadSamples(file.toString());
+        nn.prepareTrainers(algorithm);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        nn.setParallelism(1);
+        nn.setOptimizer(new SgdOptimizer(), new ConstantSchedule());
+        nn.setSeed(null);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public double epoch() {
+        return nn.epoch(algorithm);
+    }
+}
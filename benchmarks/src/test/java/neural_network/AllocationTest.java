@@ -0,0 +1,123 @@
+package neural_network;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Steady-state inference, cache hits and serial training epochs allocate
+ * nothing. Each check measures allocation of the calling thread for a small
+ * and a 100 times larger amount of work, both include the same constant cost
+ * of the measurement itself, so any allocation per call shows up as a
+ * difference.
+ */
+public class AllocationTest {
+    // allowed difference, a single byte per call would exceed it by far
+    private static final long TOLERANCE = 1024;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private NeuralNetwork nn;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        file = Samples.writeBinary(Samples.create(200, 20, 5, 1));
+        nn = NeuralNetwork.getInstance();
+        nn.setSeed(1L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        nn.setSeed(null);
+        nn.setLimits(0, 0);
+        nn.setRecognitionCache(0, 0);
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void inferenceDoesntAllocate() throws Exception {
+        nn.setLimits(5, 0);
+        nn.train(file.toString(), "10", "20x8x5", "0.1", "0", 1);
+        final double[] x = Samples.create(1, 20, 5, 2).x;
+        final double[] output = new double[5];
+        assertConstant(new Work() {
+            @Override
+            public void run(int n) throws Exception {
+                for (int i = 0; i < n; i++) {
+                    nn.infer(x, output);
+                }
+            }
+        }, 1000);
+    }
+
+    @Test
+    public void cacheHitsDontAllocate() throws Exception {
+        nn.setLimits(5, 0);
+        nn.train(file.toString(), "10", "20x8x5", "0.1", "0", 1);
+        nn.setRecognitionCache(100, 0.01);
+        final double[] x = Samples.create(1, 20, 5, 2).x;
+        final double[] output = new double[5];
+        assertConstant(new Work() {
+            @Override
+            public void run(int n) throws Exception {
+                for (int i = 0; i < n; i++) {
+                    nn.infer(x, output);
+                }
+            }
+        }, 1000);
+        assertTrue(nn.getRecognitionCache().getHits() > 0);
+    }
+
+    @Test
+    public void trainingEpochsDontAllocate() throws Exception {
+        // backpropagation, stohastic and mini-batch backpropagation
+        for (final int algVer : new int[] { 0, 1, 2 }) {
+            nn.initialize("10", "20x8x5", "0.01", "0");
+            nn.loadSamples(file.toString());
+            nn.prepareTrainers(algVer);
+            assertConstant(new Work() {
+                @Override
+                public void run(int n) {
+                    for (int i = 0; i < n; i++) {
+                        nn.epoch(algVer);
+                    }
+                }
+            }, 10);
+        }
+    }
+
+    private interface Work {
+        void run(int n) throws Exception;
+    }
+
+    // runs the work n and 100 * n times after a warm-up and compares
+    // allocated bytes
+    private void assertConstant(Work work, int n) throws Exception {
+        work.run(100 * n);
+        long small = allocated(work, n);
+        long large = allocated(work, 100 * n);
+        assertTrue("Allocated " + small + " bytes for " + n + " calls and "
+                + large + " bytes for " + 100 * n + " calls.",
+                large - small < TOLERANCE);
+    }
+
+    private long allocated(Work work, int n) throws Exception {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) threads;
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        work.run(n);
+        return bean.getThreadAllocatedBytes(id) - before;
+    }
+}
@@ -0,0 +1,59 @@
+package neural_network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest {
+    private NeuralNetwork nn;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Samples.writeText(Samples.create(200, 20, 5, 1));
+        nn = NeuralNetwork.getInstance();
+        nn.setSeed(1L);
+        nn.setLimits(20, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        nn.getMetrics().setEnabled(false);
+        nn.setSeed(null);
+        nn.setLimits(0, 0);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void metricsDontChangeStohasticTraining() {
+        for (Optimizer optimizer : new Optimizer[] { new SgdOptimizer(),
+                new AdamOptimizer() }) {
+            nn.setOptimizer(optimizer, new ConstantSchedule());
+            FlatNetwork plain = train(false);
+            FlatNetwork measured = train(true);
+            for (int k = 0; k < plain.w.length; k++) {
+                assertArrayEquals(plain.w[k], measured.w[k], 0);
+                assertArrayEquals(plain.b[k], measured.b[k], 0);
+            }
+            EpochMetrics last = nn.getMetrics().getLastEpoch();
+            assertEquals(20, last.getEpoch());
+            for (double norm : nn.getMetrics().getUpdateNorms()) {
+                assertTrue(norm > 0);
+            }
+        }
+        nn.setOptimizer(new SgdOptimizer(), new ConstantSchedule());
+    }
+
+    private FlatNetwork train(boolean metrics) {
+        nn.getMetrics().setEnabled(metrics);
+        nn.train(file.toString(), "10", "20x8x5", "0.05", "0", 1);
+        return nn.getModel().network();
+    }
+}
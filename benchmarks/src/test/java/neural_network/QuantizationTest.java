@@ -0,0 +1,52 @@
+package neural_network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuantizationTest {
+    private NeuralNetwork nn;
+    private Dataset samples;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        samples = Samples.create(200, 20, 5, 1);
+        file = Samples.writeBinary(samples);
+        nn = NeuralNetwork.getInstance();
+        nn.setSeed(1L);
+        nn.setLimits(200, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        nn.setSeed(null);
+        nn.setLimits(0, 0);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void copiesStayCloseToTheModel() {
+        for (String architecture : new String[] { "20x16x5",
+                "20x16tanhx5softmax", "20x16relux5" }) {
+            nn.train(file.toString(), "10", architecture, "0.05", "0", 1);
+            TrainedModel model = nn.getModel();
+            QuantizationReport float32 = new QuantizationReport(model,
+                    model.toFloatModel(), samples);
+            QuantizationReport int8 = new QuantizationReport(model,
+                    model.quantize(), samples);
+            assertEquals(architecture, 1, float32.agreement, 0);
+            assertTrue(architecture + " float " + float32,
+                    float32.maxDrift < 1e-5);
+            assertTrue(architecture + " int8 " + int8,
+                    int8.agreement >= 0.95);
+            assertTrue(architecture + " int8 " + int8, int8.maxDrift < 0.05);
+        }
+    }
+}
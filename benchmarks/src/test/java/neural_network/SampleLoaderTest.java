@@ -0,0 +1,80 @@
+package neural_network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SampleLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadsTextAndBinarySamples() throws Exception {
+        Dataset dataset = Samples.create(100, 20, 5, 1);
+        Dataset text = SampleLoader.load(Samples.writeText(dataset)
+                .toString(), 20, 5);
+        Dataset binary = SampleLoader.load(Samples.writeBinary(dataset)
+                .toString(), 20, 5);
+        assertEquals(100, text.rows);
+        // text samples are loaded into arrays with spare capacity
+        assertArrayEquals(dataset.x, Arrays.copyOf(text.x, 2000), 1e-15);
+        assertArrayEquals(dataset.t, Arrays.copyOf(text.t, 500), 0);
+        assertEquals(100, binary.rows);
+        assertArrayEquals(dataset.x, binary.x, 0);
+        assertArrayEquals(dataset.t, binary.t, 0);
+    }
+
+    @Test
+    public void rejectsByteOrderMark() throws Exception {
+        byte[] rows = "0.5 1\n0.25 0\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] content = new byte[rows.length + 3];
+        content[0] = (byte) 0xEF;
+        content[1] = (byte) 0xBB;
+        content[2] = (byte) 0xBF;
+        System.arraycopy(rows, 0, content, 3, rows.length);
+        assertRejected(write(content), "Non-ASCII character on line 1");
+    }
+
+    @Test
+    public void rejectsNonAsciiCharacter() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int r = 0; r < 100; r++) {
+            text.append(r == 52 ? "0.5é 1\n" : "0.5 1\n");
+        }
+        assertRejected(write(text.toString().getBytes(
+                StandardCharsets.UTF_8)), "Non-ASCII character on line 53");
+    }
+
+    @Test
+    public void rejectsUnexpectedCharacter() throws Exception {
+        assertRejected(write("0.5 1\n0.25 x\n".getBytes(
+                StandardCharsets.US_ASCII)),
+                "Unexpected character 'x' on line 2");
+    }
+
+    private File write(byte[] content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static void assertRejected(File file, String message) {
+        try {
+            Dataset dataset = SampleLoader.load(file.toString(), 1, 1);
+            fail("Loaded " + dataset.rows + " samples.");
+        } catch (NeuralNetworkException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package neural_network;
+
+/**
+ * Transfer function of neurons.
+ */
+public interface Activation {
+    /**
+     * @param net
+     *            Weighted sum of neuron's inputs
+     * @return Output of the neuron
+     */
+    double apply(double net);
+
+    /**
+     * Derivative used by backpropagation.
+     * 
+     * @param y
+     *            Output of the neuron
+     * @return Derivative of the transfer function at the point where it
+     *         outputs y
+     */
+    double derivative(double y);
+}
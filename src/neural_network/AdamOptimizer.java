@@ -0,0 +1,71 @@
+package neural_network;
+
+/**
+ * Adam, keeps running means of corrections and of their squares for every
+ * weight and steps by their bias-corrected ratio. Works best with a learning
+ * rate around 0.001.
+ */
+public class AdamOptimizer extends Optimizer {
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+    // running means of corrections and of squared corrections
+    private double[][] mean;
+    private double[][] meanSquare;
+    // bias corrections of the current step
+    private double correction1;
+    private double correction2;
+
+    public AdamOptimizer() {
+        this(0.9, 0.999, 1e-8);
+    }
+
+    /**
+     * @param beta1
+     *            Weight of the old mean of corrections, between 0 and 1
+     * @param beta2
+     *            Weight of the old mean of squared corrections, between 0
+     *            and 1
+     * @param epsilon
+     *            Added to the root mean square to avoid division by 0
+     */
+    public AdamOptimizer(double beta1, double beta2, double epsilon) {
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    void reset(int[] lengths) {
+        super.reset(lengths);
+        mean = allocate(lengths);
+        meanSquare = allocate(lengths);
+    }
+
+    @Override
+    void beginStep() {
+        super.beginStep();
+        correction1 = 1 - Math.pow(beta1, steps);
+        correction2 = 1 - Math.pow(beta2, steps);
+    }
+
+    @Override
+    double update(int p, double[] params, double[] corrections, double lr) {
+        double[] m = mean[p];
+        double[] v = meanSquare[p];
+        // the bias correction of the mean is folded into the step
+        double step = lr / correction1;
+        double c2 = correction2;
+        double squares = 0;
+        for (int i = 0; i < params.length; i++) {
+            double g = corrections[i];
+            m[i] = beta1 * m[i] + (1 - beta1) * g;
+            v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+            double d = step * m[i] / (Math.sqrt(v[i] / c2) + epsilon);
+            params[i] += d;
+            corrections[i] = 0;
+            squares += d * d;
+        }
+        return squares;
+    }
+}
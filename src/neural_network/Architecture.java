@@ -0,0 +1,115 @@
+package neural_network;
+
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed network architecture. Layers are separated by 'x', every layer
+ * after the input layer may name its transfer function right after its
+ * size, for example "20x64relu x32relu x5softmax". Possible names are
+ * sigmoid, tanh, relu, leakyrelu and softmax, softmax is allowed only on the
+ * output layer. Layers without a name use the sigmoid.
+ */
+class Architecture {
+    private static final Pattern LAYER = Pattern
+            .compile("(\\d+)\\s*(sigmoid|tanh|leakyrelu|relu|softmax)?");
+
+    // layer sizes, sizes[0] is the input layer
+    final int[] sizes;
+    // transfer functions of layers 1 to L-1, null for the softmax layer
+    final Activation[] activations;
+    // is the output layer softmax
+    final boolean softmax;
+
+    private Architecture(int[] sizes, Activation[] activations,
+            boolean softmax) {
+        this.sizes = sizes;
+        this.activations = activations;
+        this.softmax = softmax;
+    }
+
+    /**
+     * Parses the architecture.
+     *
+     * @param architecture
+     *            Architecture k1xk2x...xkn with optional transfer functions
+     * @param sigmoid
+     *            Implementation of the sigmoid used by layers without a name
+     *            and layers named sigmoid
+     * @return Parsed architecture
+     * @throws NeuralNetworkException
+     *             If the architecture is not valid
+     */
+    static Architecture parse(String architecture, Activation sigmoid)
+            throws NeuralNetworkException {
+        ArrayList<Integer> sizes = new ArrayList<Integer>();
+        ArrayList<String> names = new ArrayList<String>();
+        Matcher matcher = LAYER.matcher(architecture);
+        int end = 0;
+        while (matcher.find()) {
+            String separator = architecture.substring(end, matcher.start())
+                    .trim();
+            if (!separator.equals(sizes.isEmpty() ? "" : "x")) {
+                throw new NeuralNetworkException("Invalid architecture "
+                        + architecture + ".");
+            }
+            try {
+                sizes.add(Integer.parseInt(matcher.group(1)));
+            } catch (NumberFormatException e) {
+                throw new NeuralNetworkException("Layer size "
+                        + matcher.group(1) + " is too large.");
+            }
+            names.add(matcher.group(2));
+            end = matcher.end();
+        }
+        if (!architecture.substring(end).trim().isEmpty()
+                || sizes.size() < 2) {
+            throw new NeuralNetworkException("Invalid architecture "
+                    + architecture + ".");
+        }
+        if (names.get(0) != null) {
+            throw new NeuralNetworkException(
+                    "Input layer can't have a transfer function.");
+        }
+
+        int L = sizes.size();
+        int[] layerSizes = new int[L];
+        Activation[] activations = new Activation[L - 1];
+        boolean softmax = false;
+        for (int k = 0; k < L; k++) {
+            layerSizes[k] = sizes.get(k);
+            if (layerSizes[k] < 1) {
+                throw new NeuralNetworkException(
+                        "Layer should have at least one neuron.");
+            }
+            if (k == 0) {
+                continue;
+            }
+            String name = names.get(k);
+            if ("softmax".equals(name)) {
+                if (k < L - 1) {
+                    throw new NeuralNetworkException(
+                            "Only the output layer can be softmax.");
+                }
+                softmax = true;
+            } else {
+                activations[k - 1] = activation(name, sigmoid);
+            }
+        }
+        return new Architecture(layerSizes, activations, softmax);
+    }
+
+    private static Activation activation(String name, Activation sigmoid) {
+        if (name == null || name.equals("sigmoid")) {
+            return sigmoid;
+        }
+        if (name.equals("tanh")) {
+            return new TanhActivation();
+        }
+        if (name.equals("relu")) {
+            return new ReluActivation();
+        }
+        return new LeakyReluActivation();
+    }
+}
@@ -0,0 +1,106 @@
+package neural_network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Asynchronous stohastic backpropagation. Every worker streams its own shard
+ * of samples and corrects the shared weights right after each sample without
+ * any locking. Workers may overwrite each other's corrections of the same
+ * weight, such lost updates are accepted in exchange for updates that never
+ * wait. Workspaces stay confined to their workers, only the weights and the
+ * optimizer state are shared, adaptive optimizers update their state with
+ * the same races as the weights.
+ */
+class AsyncTrainer {
+    private final FlatNetwork net;
+    private final ForkJoinPool pool;
+    private final int workers;
+    private final Workspace[] workspaces;
+    // raw corrections of each worker, used by optimizers that aren't direct
+    private final double[][][] corrections;
+    private final double[][][] biasCorrections;
+    private final double[] errors;
+
+    AsyncTrainer(FlatNetwork net, ForkJoinPool pool, int workers) {
+        this.net = net;
+        this.pool = pool;
+        this.workers = workers;
+        workspaces = new Workspace[workers];
+        corrections = new double[workers][][];
+        biasCorrections = new double[workers][][];
+        errors = new double[workers];
+        for (int t = 0; t < workers; t++) {
+            workspaces[t] = net.newWorkspace();
+            corrections[t] = new double[net.e.length][];
+            biasCorrections[t] = new double[net.eb.length][];
+            for (int k = 0; k < net.e.length; k++) {
+                corrections[t][k] = new double[net.e[k].length];
+                biasCorrections[t][k] = new double[net.eb[k].length];
+            }
+        }
+    }
+
+    // workspaces of the workers, used to collect metrics
+    Workspace[] workspaces() {
+        return workspaces;
+    }
+
+    /**
+     * Runs one epoch over all samples.
+     *
+     * @param samples
+     *            Samples to train on
+     * @param order
+     *            Indexes of samples in the order they are visited, every
+     *            worker trains a contiguous part of the order
+     * @param lr
+     *            Learning rate
+     * @return Sum of squared errors of all samples
+     */
+    double epoch(final Dataset samples, final int[] order,
+            final double lr) {
+        final int size = samples.rows;
+        final int shards = Math.min(workers, size);
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+        for (int s = 0; s < shards; s++) {
+            final int t = s;
+            final int start = (int) ((long) size * s / shards);
+            final int end = (int) ((long) size * (s + 1) / shards);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    errors[t] = trainShard(t, samples, order, start, end,
+                            lr);
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        double sumE = 0;
+        for (int s = 0; s < shards; s++) {
+            sumE += errors[s];
+        }
+        return sumE;
+    }
+
+    private double trainShard(int t, Dataset samples, int[] order,
+            int start, int end, double lr) {
+        Workspace ws = workspaces[t];
+        double sumE = 0;
+        for (int p = start; p < end; p++) {
+            int s = order[p];
+            net.forward(ws, samples.x, samples.inputOffset(s));
+            sumE += net.backward(ws, samples.t, samples.outputOffset(s));
+            net.correctWeights(ws, corrections[t], biasCorrections[t], lr);
+        }
+        return sumE;
+    }
+}
@@ -0,0 +1,30 @@
+package neural_network;
+
+/**
+ * Preallocated buffers of a batched forward pass. Outputs of layer k for row
+ * r are kept at y[k][r * sizes[k]], buffers grow only when a larger batch
+ * than any before is passed. A workspace must not be shared between threads.
+ */
+class BatchWorkspace {
+    private final int[] sizes;
+    // outputs of neurons for all rows of the batch
+    double[][] y;
+    // number of rows the buffers can hold
+    int capacity;
+
+    BatchWorkspace(int[] sizes) {
+        this.sizes = sizes;
+        this.y = new double[sizes.length][];
+    }
+
+    void ensureCapacity(int rows) {
+        if (rows <= capacity) {
+            return;
+        }
+        // input layer is read directly from the caller's array
+        for (int k = 1; k < sizes.length; k++) {
+            y[k] = new double[rows * sizes[k]];
+        }
+        capacity = rows;
+    }
+}
@@ -0,0 +1,111 @@
+package neural_network;
+
+/**
+ * Counts of recognized classes per expected class. Row is the expected
+ * class, column the recognized one.
+ */
+public class ConfusionMatrix {
+    private final long[][] counts;
+
+    public ConfusionMatrix(int classes) {
+        counts = new long[classes][classes];
+    }
+
+    public int classes() {
+        return counts.length;
+    }
+
+    void add(int expected, int recognized) {
+        counts[expected][recognized]++;
+    }
+
+    void addAll(ConfusionMatrix other) {
+        for (int i = 0; i < counts.length; i++) {
+            for (int j = 0; j < counts.length; j++) {
+                counts[i][j] += other.counts[i][j];
+            }
+        }
+    }
+
+    /**
+     * @return Number of samples of the expected class recognized as the
+     *         given class
+     */
+    public long get(int expected, int recognized) {
+        return counts[expected][recognized];
+    }
+
+    public long total() {
+        long total = 0;
+        for (long[] row : counts) {
+            for (long count : row) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Part of all samples recognized correctly
+     */
+    public double accuracy() {
+        long correct = 0;
+        for (int i = 0; i < counts.length; i++) {
+            correct += counts[i][i];
+        }
+        long total = total();
+        return total == 0 ? 0 : (double) correct / total;
+    }
+
+    /**
+     * @return Part of samples recognized as the class that really are of the
+     *         class, NaN if no sample was recognized as the class
+     */
+    public double precision(int c) {
+        long recognized = 0;
+        for (int i = 0; i < counts.length; i++) {
+            recognized += counts[i][c];
+        }
+        return recognized == 0 ? Double.NaN
+                : (double) counts[c][c] / recognized;
+    }
+
+    /**
+     * @return Part of samples of the class that are recognized as the
+     *         class, NaN if there are no samples of the class
+     */
+    public double recall(int c) {
+        long expected = 0;
+        for (int j = 0; j < counts.length; j++) {
+            expected += counts[c][j];
+        }
+        return expected == 0 ? Double.NaN
+                : (double) counts[c][c] / expected;
+    }
+
+    // gesture names for the five gestures, indexes otherwise
+    static String name(int c, int classes) {
+        return classes == 5 ? NeuralNetwork.label(c) : String.valueOf(c);
+    }
+
+    @Override
+    public String toString() {
+        int classes = counts.length;
+        StringBuilder sb = new StringBuilder(String.format("%-10s", ""));
+        for (int j = 0; j < classes; j++) {
+            sb.append(String.format("%10s", name(j, classes)));
+        }
+        sb.append(String.format("%11s%11s%n", "precision", "recall"));
+        for (int i = 0; i < classes; i++) {
+            sb.append(String.format("%-10s", name(i, classes)));
+            for (int j = 0; j < classes; j++) {
+                sb.append(String.format("%10d", counts[i][j]));
+            }
+            sb.append(String.format("%11.3f%11.3f%n", precision(i),
+                    recall(i)));
+        }
+        sb.append(String.format("accuracy %.4f of %d samples", accuracy(),
+                total()));
+        return sb.toString();
+    }
+}
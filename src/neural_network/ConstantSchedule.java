@@ -0,0 +1,11 @@
+package neural_network;
+
+/**
+ * Keeps the learning rate the training started with.
+ */
+public class ConstantSchedule implements LearningRateSchedule {
+    @Override
+    public double rate(double lr, int epoch) {
+        return lr;
+    }
+}
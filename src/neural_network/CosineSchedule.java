@@ -0,0 +1,32 @@
+package neural_network;
+
+/**
+ * Lowers the learning rate along a half cosine from the starting rate to the
+ * minimal rate over a period of epochs, then restarts from the starting rate.
+ */
+public class CosineSchedule implements LearningRateSchedule {
+    private final int period;
+    private final double minFactor;
+
+    /**
+     * @param period
+     *            Number of epochs from the starting to the minimal rate
+     * @param minFactor
+     *            Minimal rate as a part of the starting rate, between 0 and 1
+     */
+    public CosineSchedule(int period, double minFactor) {
+        if (period < 1) {
+            throw new IllegalArgumentException(
+                    "Period should be at least 1 epoch.");
+        }
+        this.period = period;
+        this.minFactor = minFactor;
+    }
+
+    @Override
+    public double rate(double lr, int epoch) {
+        double phase = (double) (epoch % period) / period;
+        double min = lr * minFactor;
+        return min + (lr - min) * (1 + Math.cos(Math.PI * phase)) / 2;
+    }
+}
@@ -0,0 +1,173 @@
+package neural_network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * k-fold cross-validation. Samples are shuffled once and split into k folds
+ * of nearly the same size, fold f is recognized by a network trained on the
+ * other folds. Folds are only arrays of sample indexes into the shared
+ * dataset, which is never copied. Folds train and evaluate in parallel on a
+ * bounded number of threads, every fold with its own network and seed, so
+ * results don't depend on the number of threads.
+ */
+public class CrossValidation {
+    private final Dataset samples;
+    private final int k;
+    private final long seed;
+    // fold f holds samples order[bounds[f]] to order[bounds[f+1]-1]
+    private final int[] order;
+    private final int[] bounds;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param samples
+     *            Samples, for example loaded by
+     *            {@link SampleLoader#load(String, int, int)}
+     * @param k
+     *            Number of folds, at least 2
+     * @param seed
+     *            Seed of the split and of the trainings
+     */
+    public CrossValidation(Dataset samples, int k, long seed) {
+        if (k < 2 || k > samples.rows) {
+            throw new IllegalArgumentException("Can't split " + samples.rows
+                    + " samples into " + k + " folds.");
+        }
+        this.samples = samples;
+        this.k = k;
+        this.seed = seed;
+        Random random = new Random(seed);
+        order = new int[samples.rows];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        bounds = new int[k + 1];
+        for (int f = 0; f <= k; f++) {
+            bounds[f] = (int) ((long) order.length * f / k);
+        }
+    }
+
+    /**
+     * @param threads
+     *            Number of folds trained at once
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads should be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Trains and evaluates all folds.
+     *
+     * @param hyperparameters
+     *            Parameters of every fold's training
+     * @param maxEpochs
+     *            Maximum number of epochs per fold
+     * @param minError
+     *            Training of a fold stops once its error is below it
+     * @return Accuracy, precision and recall of every class, confusion
+     *         matrix and results of every fold
+     * @throws NeuralNetworkException
+     *             If the hyperparameters don't fit the samples or a fold
+     *             fails
+     */
+    public EvaluationReport run(final Hyperparameters hyperparameters,
+            final int maxEpochs, final double minError)
+            throws NeuralNetworkException {
+        long start = System.nanoTime();
+        Random random = new Random(seed);
+        List<Callable<FoldResult>> tasks;
+        tasks = new ArrayList<Callable<FoldResult>>();
+        for (int f = 0; f < k; f++) {
+            final int fold = f;
+            final FlatNetwork net = hyperparameters.newNetwork(
+                    samples.inputs, samples.outputs,
+                    new Random(random.nextLong()));
+            final Random shuffle = new Random(random.nextLong());
+            tasks.add(new Callable<FoldResult>() {
+                @Override
+                public FoldResult call() {
+                    return runFold(fold, net, shuffle, hyperparameters,
+                            maxEpochs, minError);
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "cross-validation");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        List<FoldResult> folds = new ArrayList<FoldResult>();
+        try {
+            for (Future<FoldResult> future : executor.invokeAll(tasks)) {
+                folds.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new NeuralNetworkException("Fold failed: "
+                    + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException(
+                    "Interrupted during cross-validation.");
+        } finally {
+            executor.shutdownNow();
+        }
+        return new EvaluationReport(folds, samples.outputs,
+                (System.nanoTime() - start) / 1000000L);
+    }
+
+    private FoldResult runFold(int fold, FlatNetwork net, Random shuffle,
+            Hyperparameters hyperparameters, int maxEpochs, double minError) {
+        int[] test = new int[bounds[fold + 1] - bounds[fold]];
+        int[] training = new int[order.length - test.length];
+        System.arraycopy(order, bounds[fold], test, 0, test.length);
+        System.arraycopy(order, 0, training, 0, bounds[fold]);
+        System.arraycopy(order, bounds[fold + 1], training, bounds[fold],
+                order.length - bounds[fold + 1]);
+
+        SubsetTrainer trainer = new SubsetTrainer(net, samples, training,
+                hyperparameters.stohastic(),
+                hyperparameters.updateSize(training.length), shuffle);
+        long start = System.nanoTime();
+        int epochs = 0;
+        double E = Double.NaN;
+        while (epochs < maxEpochs) {
+            E = trainer.epoch(hyperparameters.getLearningRate());
+            epochs++;
+            if (E < minError || Double.isNaN(E) || Double.isInfinite(E)) {
+                break;
+            }
+        }
+        long trainingNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ConfusionMatrix confusion = new ConfusionMatrix(samples.outputs);
+        for (int s : test) {
+            confusion.add(samples.label(s), trainer.classify(s));
+        }
+        long evaluationNanos = System.nanoTime() - start;
+        return new FoldResult(fold, training.length, epochs, E,
+                trainingNanos, evaluationNanos, confusion);
+    }
+}
@@ -0,0 +1,108 @@
+package neural_network;
+
+/**
+ * Samples held in two contiguous row-major matrices, inputs of sample r start
+ * at x[r * inputs] and its expected outputs at t[r * outputs]. Arrays may be
+ * longer than needed, only the first rows are valid.
+ */
+public class Dataset {
+    // inputs of samples
+    final double[] x;
+    // expected outputs of samples
+    final double[] t;
+    final int rows;
+    final int inputs;
+    final int outputs;
+
+    Dataset(double[] x, double[] t, int rows, int inputs, int outputs) {
+        this.x = x;
+        this.t = t;
+        this.rows = rows;
+        this.inputs = inputs;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Creates dataset of classification samples without copying their
+     * inputs, for example of the feature matrix computed by
+     * {@link neural_network.gesture.GesturePreprocessor}.
+     * 
+     * @param x
+     *            Inputs of samples, row after row
+     * @param labels
+     *            Index of the class of every sample, its expected output is
+     *            1 for that class and 0 for the others
+     * @param inputs
+     *            Number of inputs per sample
+     * @param outputs
+     *            Number of classes
+     * @return Dataset holding the given inputs
+     */
+    public static Dataset fromLabels(double[] x, int[] labels, int inputs,
+            int outputs) {
+        int rows = labels.length;
+        if (x.length < rows * inputs) {
+            throw new IllegalArgumentException(
+                    "Inputs don't hold all samples.");
+        }
+        double[] t = new double[rows * outputs];
+        for (int r = 0; r < rows; r++) {
+            if (labels[r] < 0 || labels[r] >= outputs) {
+                throw new IllegalArgumentException("Invalid label "
+                        + labels[r] + " of sample " + r + ".");
+            }
+            t[r * outputs + labels[r]] = 1;
+        }
+        return new Dataset(x, t, rows, inputs, outputs);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int inputs() {
+        return inputs;
+    }
+
+    public int outputs() {
+        return outputs;
+    }
+
+    /**
+     * Copies the given samples into a new dataset.
+     *
+     * @param selected
+     *            Indexes of the samples, in the order they are copied
+     * @return Dataset with the selected samples
+     */
+    Dataset select(int[] selected) {
+        double[] sx = new double[selected.length * inputs];
+        double[] st = new double[selected.length * outputs];
+        for (int r = 0; r < selected.length; r++) {
+            System.arraycopy(x, selected[r] * inputs, sx, r * inputs, inputs);
+            System.arraycopy(t, selected[r] * outputs, st, r * outputs,
+                    outputs);
+        }
+        return new Dataset(sx, st, selected.length, inputs, outputs);
+    }
+
+    int inputOffset(int row) {
+        return row * inputs;
+    }
+
+    int outputOffset(int row) {
+        return row * outputs;
+    }
+
+    // index of the expected gesture of the sample
+    int label(int row) {
+        int offset = row * outputs;
+        int maxIndex = 0;
+        for (int i = 1; i < outputs; i++) {
+            if (t[offset + i] > t[offset + maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+}
@@ -0,0 +1,214 @@
+package neural_network;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import neural_network.gesture.StrokeFeaturizer;
+
+/**
+ * Recognizes a stroke while it is drawn. After points are added to the
+ * featurizer, {@link #update()} takes representation of the stroke drawn so
+ * far, at most once per interval, and recognizes it on a background thread.
+ * Only the latest recognition matters, a waiting older one is cancelled and
+ * results of one that is already running are dropped. When confidence of the
+ * recognized gesture reaches the threshold in several recognitions in a row,
+ * the stroke is decided and not recognized any more. Prefixes are scaled to
+ * fit the square just like whole strokes, so a single confident recognition
+ * of a short prefix is often wrong.
+ *
+ * {@link #begin()}, {@link #update()} and {@link #end()} have to be called
+ * from the thread that adds points to the featurizer.
+ */
+public class EarlyRecognizer implements Closeable {
+    private final NeuralNetwork nn;
+    private final StrokeFeaturizer stroke;
+    private final ExecutorService executor;
+    // number of the latest recognition, begin and end increase it so that
+    // recognitions of an old stroke are dropped
+    private final AtomicLong latest = new AtomicLong();
+    private volatile RecognitionListener listener;
+    private long interval = 50000000L;
+    private volatile double threshold = 0.9;
+    private volatile int agreement = 3;
+    private int minPoints = 10;
+    // time when the stroke started and when it was last recognized
+    private long strokeStart;
+    private long lastRecognition;
+    // recognition waiting for or running on the background thread
+    private Future<?> pending;
+    private volatile Recognition prediction;
+    private volatile Recognition decision;
+    // number of the first recognition of the current stroke
+    private volatile long strokeFirst;
+    // used only by the background thread, last recognition and number of
+    // confident recognitions of its gesture in a row
+    private long lastNumber;
+    private int lastGesture;
+    private int streak;
+
+    /**
+     * @param nn
+     *            Network that recognizes strokes
+     * @param stroke
+     *            Featurizer receiving points of the stroke
+     */
+    public EarlyRecognizer(NeuralNetwork nn, StrokeFeaturizer stroke) {
+        this.nn = nn;
+        this.stroke = stroke;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "early-recognition");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void setListener(RecognitionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets when strokes are recognized.
+     *
+     * @param intervalMillis
+     *            Minimum time between two recognitions of a stroke
+     * @param threshold
+     *            Confidence from 0 to 1 a recognition needs to count for a
+     *            decision
+     * @param agreement
+     *            Number of confident recognitions of the same gesture in a
+     *            row that decide the stroke
+     * @param minPoints
+     *            Number of points a stroke needs before it is recognized
+     */
+    public void setPolicy(long intervalMillis, double threshold,
+            int agreement, int minPoints) {
+        if (intervalMillis < 0 || threshold < 0 || threshold > 1
+                || agreement < 1 || minPoints < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid early recognition policy.");
+        }
+        this.interval = intervalMillis * 1000000L;
+        this.threshold = threshold;
+        this.agreement = agreement;
+        this.minPoints = minPoints;
+    }
+
+    /**
+     * @return Latest recognition of the current stroke or null
+     */
+    public Recognition getPrediction() {
+        return prediction;
+    }
+
+    /**
+     * @return Recognition that decided the current stroke or null
+     */
+    public Recognition getDecision() {
+        return decision;
+    }
+
+    /**
+     * Starts a new stroke, call it after the featurizer is reset.
+     */
+    public void begin() {
+        drop();
+        prediction = null;
+        decision = null;
+        strokeFirst = latest.get() + 1;
+        strokeStart = System.nanoTime();
+        lastRecognition = strokeStart;
+    }
+
+    /**
+     * Recognizes the stroke drawn so far if it's not decided and enough time
+     * passed since it was last recognized.
+     */
+    public void update() {
+        if (decision != null || stroke.points() < minPoints) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastRecognition < interval) {
+            return;
+        }
+        lastRecognition = now;
+        final double[] x = new double[2 * stroke.getM()];
+        stroke.represent(x, 0);
+        final long points = stroke.points();
+        final long number = latest.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                recognize(x, points, number);
+            }
+        });
+    }
+
+    /**
+     * Ends the stroke, recognitions still waiting or running are dropped.
+     */
+    public void end() {
+        drop();
+    }
+
+    private void drop() {
+        latest.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private void recognize(double[] x, long points, long number) {
+        TrainedModel model = nn.getModel();
+        if (model == null || model.inputSize() != x.length) {
+            return;
+        }
+        double[] output = new double[model.outputSize()];
+        // prefixes go straight to the model, caching them would only evict
+        // recognitions of whole strokes
+        int gesture = model.infer(x, output);
+        model.network().probabilities(output, 0, output, 0);
+        Recognition recognition = new Recognition(gesture, output, points,
+                (System.nanoTime() - strokeStart) / 1000000L);
+        if (number != latest.get()) {
+            return;
+        }
+        prediction = recognition;
+        boolean confident = recognition.getConfidence() >= threshold;
+        if (confident && lastNumber >= strokeFirst && gesture == lastGesture) {
+            streak++;
+        } else {
+            streak = confident ? 1 : 0;
+        }
+        lastNumber = number;
+        lastGesture = gesture;
+        boolean decided = decision == null && streak >= agreement;
+        if (decided) {
+            decision = recognition;
+        }
+        RecognitionListener listener = this.listener;
+        if (listener != null) {
+            listener.prediction(recognition);
+            if (decided) {
+                listener.decided(recognition);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        drop();
+        executor.shutdownNow();
+    }
+}
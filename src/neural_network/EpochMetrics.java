@@ -0,0 +1,95 @@
+package neural_network;
+
+/**
+ * Measurements of one training epoch. Layer k of the per-layer arrays
+ * computes layer k+1 of the network from layer k.
+ */
+public class EpochMetrics {
+    private final int epoch;
+    private final int samples;
+    private final double error;
+    private final long durationNanos;
+    private final long[] forwardNanos;
+    private final long[] backwardNanos;
+    private final double[] gradientNorms;
+    private final double[] updateNorms;
+    private final long allocatedBytes;
+
+    EpochMetrics(int epoch, int samples, double error, long durationNanos,
+            long[] forwardNanos, long[] backwardNanos,
+            double[] gradientNorms, double[] updateNorms,
+            long allocatedBytes) {
+        this.epoch = epoch;
+        this.samples = samples;
+        this.error = error;
+        this.durationNanos = durationNanos;
+        this.forwardNanos = forwardNanos;
+        this.backwardNanos = backwardNanos;
+        this.gradientNorms = gradientNorms;
+        this.updateNorms = updateNorms;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return Number of the epoch, starting from 1
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public double getError() {
+        return error;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getSamplesPerSecond() {
+        return durationNanos == 0 ? 0 : samples * 1e9 / durationNanos;
+    }
+
+    /**
+     * @return Time spent by forward passes in every layer, summed over all
+     *         training threads
+     */
+    public long[] getForwardNanos() {
+        return forwardNanos.clone();
+    }
+
+    /**
+     * @return Time spent by backward passes and computing corrections in
+     *         every layer, summed over all training threads
+     */
+    public long[] getBackwardNanos() {
+        return backwardNanos.clone();
+    }
+
+    /**
+     * @return Mean L2 norm of raw corrections of every layer's weights and
+     *         bias per optimizer step
+     */
+    public double[] getGradientNorms() {
+        return gradientNorms.clone();
+    }
+
+    /**
+     * @return Mean L2 norm of the change of every layer's weights and bias
+     *         per optimizer step
+     */
+    public double[] getUpdateNorms() {
+        return updateNorms.clone();
+    }
+
+    /**
+     * @return Bytes allocated by all threads during the epoch, -1 if the JVM
+     *         doesn't measure allocations
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
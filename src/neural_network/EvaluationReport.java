@@ -0,0 +1,81 @@
+package neural_network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a cross-validation, the confusion matrix sums the matrices of
+ * all folds, so every sample is counted once.
+ */
+public class EvaluationReport {
+    private final List<FoldResult> folds;
+    private final ConfusionMatrix confusion;
+    private final long elapsedMillis;
+
+    EvaluationReport(List<FoldResult> folds, int classes, long elapsedMillis) {
+        this.folds = new ArrayList<FoldResult>(folds);
+        this.confusion = new ConfusionMatrix(classes);
+        for (FoldResult fold : folds) {
+            confusion.addAll(fold.getConfusion());
+        }
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<FoldResult> getFolds() {
+        return Collections.unmodifiableList(folds);
+    }
+
+    public ConfusionMatrix getConfusion() {
+        return confusion;
+    }
+
+    public double getAccuracy() {
+        return confusion.accuracy();
+    }
+
+    /**
+     * @return Standard deviation of the accuracy of the folds
+     */
+    public double getAccuracyDeviation() {
+        double mean = 0;
+        for (FoldResult fold : folds) {
+            mean += fold.getAccuracy();
+        }
+        mean /= folds.size();
+        double variance = 0;
+        for (FoldResult fold : folds) {
+            double d = fold.getAccuracy() - mean;
+            variance += d * d;
+        }
+        return Math.sqrt(variance / folds.size());
+    }
+
+    public double getPrecision(int c) {
+        return confusion.precision(c);
+    }
+
+    public double getRecall(int c) {
+        return confusion.recall(c);
+    }
+
+    /**
+     * @return Time the whole cross-validation took
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(folds.size()).append("-fold cross-validation in ")
+                .append(elapsedMillis).append(" ms\n");
+        for (FoldResult fold : folds) {
+            sb.append(fold).append('\n');
+        }
+        sb.append(confusion).append(String.format(
+                ", deviation between folds %.4f", getAccuracyDeviation()));
+        return sb.toString();
+    }
+}
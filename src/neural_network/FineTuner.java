@@ -0,0 +1,81 @@
+package neural_network;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Continues training of an already trained network on a few new samples.
+ * Runs a bounded number of mini-batch steps, every batch draws new samples
+ * and, if there is a replay buffer, a part of old samples from it.
+ */
+class FineTuner {
+    private final FlatNetwork net;
+    private final Workspace ws;
+    private final Random random;
+    // rows of the current batch taken from the replay buffer and from the
+    // new samples
+    private int[] replayRows = new int[0];
+    private int[] freshRows = new int[0];
+
+    // the network is trained in place, it must not be used by inference
+    FineTuner(FlatNetwork net, Random random) {
+        this.net = net;
+        this.ws = net.newWorkspace();
+        this.random = random;
+    }
+
+    /**
+     * @param samples
+     *            New samples
+     * @param replay
+     *            Old samples or null
+     * @param replayRatio
+     *            Part of every batch taken from the replay buffer, between 0
+     *            and 1, at least one sample of every batch is new
+     * @param steps
+     *            Number of weight updates
+     * @param batchSize
+     *            Number of samples per update
+     * @param lr
+     *            Learning rate
+     * @param cancelled
+     *            Checked before every step
+     * @return Mean error of the last batch, NaN if no step was done
+     */
+    double tune(Dataset samples, ReplayBuffer replay, double replayRatio,
+            int steps, int batchSize, double lr, AtomicBoolean cancelled) {
+        // every batch keeps at least one new sample, otherwise the new
+        // samples would never be trained
+        int fromReplay = replay == null || replay.size() == 0 ? 0
+                : (int) Math.min(Math.round(batchSize * replayRatio),
+                        batchSize - 1);
+        int fresh = batchSize - fromReplay;
+        Dataset old = fromReplay > 0 ? replay.samples() : null;
+        if (replayRows.length < fromReplay) {
+            replayRows = new int[fromReplay];
+        }
+        if (freshRows.length < fresh) {
+            freshRows = new int[fresh];
+        }
+        double E = Double.NaN;
+        for (int step = 0; step < steps && !cancelled.get(); step++) {
+            for (int i = 0; i < fromReplay; i++) {
+                replayRows[i] = random.nextInt(old.rows);
+            }
+            for (int i = 0; i < fresh; i++) {
+                freshRows[i] = random.nextInt(samples.rows);
+            }
+            // old samples come first, the batch is applied after the last
+            // new one
+            double sumE = 0;
+            if (fromReplay > 0) {
+                sumE += net.train(ws, old, replayRows, 0, fromReplay, 0, lr,
+                        false, batchSize);
+            }
+            sumE += net.train(ws, samples, freshRows, 0, fresh, fromReplay,
+                    lr, false, batchSize);
+            E = net.meanError(sumE, batchSize);
+        }
+        return E;
+    }
+}
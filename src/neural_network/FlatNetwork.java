@@ -0,0 +1,658 @@
+package neural_network;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compute engine of the network. Weights between layer k and layer k+1 are
+ * kept in one contiguous row-major array, row j holds the weights of all
+ * connections going into neuron j of layer k+1, so both passes run as tight
+ * matrix-vector loops.
+ */
+class FlatNetwork {
+    // smallest output used in the cross-entropy, keeps the logarithm finite
+    private static final double MIN_OUTPUT = 1e-300;
+
+    // layer sizes, sizes[0] is the input layer
+    final int[] sizes;
+    // weights, w[k][j * sizes[k] + i] connects neuron i of layer k with
+    // neuron j of layer k+1
+    final double[][] w;
+    // bias of neurons in layer k+1
+    final double[][] b;
+    // accumulated weight corrections, same layout as w
+    final double[][] e;
+    // accumulated bias corrections, same layout as b
+    final double[][] eb;
+    // transfer function of neurons in layer k+1, null for softmax
+    final Activation[] activations;
+    // is the output layer softmax, trained with the cross-entropy instead
+    // of the squared error
+    final boolean softmax;
+    // turns accumulated corrections into weight updates
+    Optimizer optimizer = new SgdOptimizer();
+    // norms of optimizer steps, null unless metrics are enabled
+    StepStats stepStats;
+
+    FlatNetwork(int[] sizes) {
+        this(sizes, new SigmoidActivation());
+    }
+
+    FlatNetwork(int[] sizes, Activation activation) {
+        this(sizes, same(activation, sizes.length - 1), false);
+    }
+
+    FlatNetwork(Architecture architecture) {
+        this(architecture.sizes, architecture.activations,
+                architecture.softmax);
+    }
+
+    FlatNetwork(int[] sizes, Activation[] activations, boolean softmax) {
+        this.sizes = sizes;
+        this.activations = activations;
+        this.softmax = softmax;
+        int L = sizes.length;
+        w = new double[L - 1][];
+        b = new double[L - 1][];
+        e = new double[L - 1][];
+        eb = new double[L - 1][];
+        for (int k = 0; k < L - 1; k++) {
+            w[k] = new double[sizes[k] * sizes[k + 1]];
+            b[k] = new double[sizes[k + 1]];
+            e[k] = new double[sizes[k] * sizes[k + 1]];
+            eb[k] = new double[sizes[k + 1]];
+        }
+    }
+
+    // shares weights, bias and corrections with the given network
+    private FlatNetwork(FlatNetwork net, Activation[] activations) {
+        this.sizes = net.sizes;
+        this.w = net.w;
+        this.b = net.b;
+        this.e = net.e;
+        this.eb = net.eb;
+        this.softmax = net.softmax;
+        this.activations = activations;
+        this.optimizer = net.optimizer;
+    }
+
+    private static Activation[] same(Activation activation, int layers) {
+        Activation[] activations = new Activation[layers];
+        for (int k = 0; k < layers; k++) {
+            activations[k] = activation;
+        }
+        return activations;
+    }
+
+    /**
+     * Creates network that uses the same weights as this one but another
+     * implementation of the sigmoid in its sigmoid layers, changes of weights
+     * of one are visible in the other.
+     *
+     * @param sigmoid
+     *            Sigmoid used by the new network
+     * @return Network sharing weights with this network
+     */
+    FlatNetwork withActivation(Activation sigmoid) {
+        Activation[] replaced = activations.clone();
+        for (int k = 0; k < replaced.length; k++) {
+            if (replaced[k] instanceof SigmoidActivation) {
+                replaced[k] = sigmoid;
+            }
+        }
+        return new FlatNetwork(this, replaced);
+    }
+
+    // copy of sizes, weights and bias, accumulated corrections are not
+    // copied
+    FlatNetwork copy() {
+        FlatNetwork copy = new FlatNetwork(sizes.clone(), activations.clone(),
+                softmax);
+        copyTo(copy);
+        return copy;
+    }
+
+    // copies weights and bias to a network of the same architecture
+    void copyTo(FlatNetwork target) {
+        for (int k = 0; k < w.length; k++) {
+            System.arraycopy(w[k], 0, target.w[k], 0, w[k].length);
+            System.arraycopy(b[k], 0, target.b[k], 0, b[k].length);
+        }
+    }
+
+    /**
+     * Sets the optimizer used by training and resets its state.
+     *
+     * @param optimizer
+     *            Optimizer of this network
+     */
+    void setOptimizer(Optimizer optimizer) {
+        int[] lengths = new int[2 * w.length];
+        for (int k = 0; k < w.length; k++) {
+            lengths[2 * k] = w[k].length;
+            lengths[2 * k + 1] = b[k].length;
+        }
+        optimizer.reset(lengths);
+        this.optimizer = optimizer;
+    }
+
+    void setStepStats(StepStats stepStats) {
+        this.stepStats = stepStats;
+    }
+
+    Workspace newWorkspace() {
+        return new Workspace(sizes);
+    }
+
+    int layerCount() {
+        return sizes.length;
+    }
+
+    int inputSize() {
+        return sizes[0];
+    }
+
+    int outputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Sets all weights to random values of the given scheme and bias to 0.
+     * Weights are drawn neuron by neuron in the same order for every scheme,
+     * so the same random sequence always gives the same network.
+     *
+     * @param initialization
+     *            Scheme of the initial weights
+     * @param random
+     *            Source of randomness
+     */
+    void initialize(WeightInitialization initialization, Random random) {
+        for (int k = 0; k < w.length; k++) {
+            int in = sizes[k];
+            int out = sizes[k + 1];
+            WeightInitialization scheme = initialization
+                    .forLayer(activations[k]);
+            for (int i = 0; i < in; i++) {
+                for (int j = 0; j < out; j++) {
+                    w[k][j * in + i] = scheme.next(random, in, out);
+                }
+            }
+            Arrays.fill(b[k], 0);
+        }
+    }
+
+    /**
+     * Runs the forward pass.
+     *
+     * @param ws
+     *            Workspace receiving outputs of all neurons
+     * @param input
+     *            Values of the input layer
+     * @return Outputs of the last layer. The array is owned by the workspace
+     *         and is overwritten by the next forward pass.
+     */
+    double[] forward(Workspace ws, double[] input) {
+        return forward(ws, input, 0);
+    }
+
+    /**
+     * Runs the forward pass.
+     *
+     * @param ws
+     *            Workspace receiving outputs of all neurons
+     * @param inputs
+     *            Array holding values of the input layer
+     * @param offset
+     *            Index of the first input value
+     * @return Outputs of the last layer. The array is owned by the workspace
+     *         and is overwritten by the next forward pass.
+     */
+    double[] forward(Workspace ws, double[] inputs, int offset) {
+        double[][] y = ws.y;
+        long[] timing = ws.forwardNanos;
+        long time = timing != null ? System.nanoTime() : 0;
+        System.arraycopy(inputs, offset, y[0], 0, sizes[0]);
+        for (int k = 0; k < w.length; k++) {
+            double[] wk = w[k];
+            double[] bk = b[k];
+            double[] in = y[k];
+            double[] out = y[k + 1];
+            int n = sizes[k];
+            Activation activation = activations[k];
+            for (int j = 0, row = 0; j < out.length; j++, row += n) {
+                double net = bk[j];
+                for (int i = 0; i < n; i++) {
+                    net += wk[row + i] * in[i];
+                }
+                out[j] = activation == null ? net : activation.apply(net);
+            }
+            if (timing != null) {
+                long now = System.nanoTime();
+                timing[k] += now - time;
+                time = now;
+            }
+        }
+        double[] o = y[y.length - 1];
+        if (softmax) {
+            softmax(o, 0, o.length);
+            // counted with the last layer
+            if (timing != null) {
+                timing[w.length - 1] += System.nanoTime() - time;
+            }
+        }
+        return o;
+    }
+
+    /**
+     * Runs the forward pass for a batch of inputs, each layer is computed as
+     * one matrix-matrix product.
+     *
+     * @param ws
+     *            Workspace receiving outputs of all neurons
+     * @param inputs
+     *            Inputs of the batch, row after row
+     * @param rows
+     *            Number of rows in the batch
+     * @return Outputs of the last layer row after row. The array is owned by
+     *         the workspace and is overwritten by the next forward pass.
+     */
+    double[] forwardBatch(BatchWorkspace ws, double[] inputs, int rows) {
+        ws.ensureCapacity(rows);
+        double[] in = inputs;
+        for (int k = 0; k < w.length; k++) {
+            double[] out = ws.y[k + 1];
+            multiply(w[k], b[k], sizes[k], sizes[k + 1], in, out, rows);
+            Activation activation = activations[k];
+            if (activation != null) {
+                for (int i = 0, n = rows * sizes[k + 1]; i < n; i++) {
+                    out[i] = activation.apply(out[i]);
+                }
+            }
+            in = out;
+        }
+        double[] o = ws.y[w.length];
+        if (softmax) {
+            int m = outputSize();
+            for (int r = 0; r < rows; r++) {
+                softmax(o, r * m, m);
+            }
+        }
+        return o;
+    }
+
+    /**
+     * Converts outputs of one sample to probabilities of the classes. Softmax
+     * outputs already sum to one and sigmoid outputs are positive, they are
+     * divided by their sum. Outputs of other transfer functions can be
+     * negative or all zero, they go through the softmax.
+     *
+     * @param o
+     *            Outputs of the network
+     * @param offset
+     *            Index of the first output of the sample
+     * @param p
+     *            Receives the probabilities, may be the outputs
+     * @param pOffset
+     *            Index of the first probability of the sample
+     */
+    void probabilities(double[] o, int offset, double[] p, int pOffset) {
+        int n = outputSize();
+        Activation last = activations[activations.length - 1];
+        if (!softmax && !(last instanceof SigmoidActivation)) {
+            System.arraycopy(o, offset, p, pOffset, n);
+            softmax(p, pOffset, n);
+            return;
+        }
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += o[offset + i];
+        }
+        for (int i = 0; i < n; i++) {
+            p[pOffset + i] = o[offset + i] / sum;
+        }
+    }
+
+    // replaces nets with their softmax
+    static void softmax(double[] o, int offset, int length) {
+        double max = o[offset];
+        for (int i = 1; i < length; i++) {
+            max = Math.max(max, o[offset + i]);
+        }
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            o[offset + i] = Math.exp(o[offset + i] - max);
+            sum += o[offset + i];
+        }
+        for (int i = 0; i < length; i++) {
+            o[offset + i] /= sum;
+        }
+    }
+
+    // number of rows sharing one pass over a weight row
+    private static final int ROW_BLOCK = 4;
+
+    // out = in * wk^T + bk for a block of rows, every loaded weight is used
+    // for ROW_BLOCK rows at once
+    private static void multiply(double[] wk, double[] bk, int n, int m,
+            double[] in, double[] out, int rows) {
+        int r = 0;
+        for (; r + ROW_BLOCK <= rows; r += ROW_BLOCK) {
+            int in0 = r * n;
+            int in1 = in0 + n;
+            int in2 = in1 + n;
+            int in3 = in2 + n;
+            for (int j = 0, row = 0; j < m; j++, row += n) {
+                double s0 = bk[j];
+                double s1 = s0;
+                double s2 = s0;
+                double s3 = s0;
+                for (int i = 0; i < n; i++) {
+                    double wi = wk[row + i];
+                    s0 += wi * in[in0 + i];
+                    s1 += wi * in[in1 + i];
+                    s2 += wi * in[in2 + i];
+                    s3 += wi * in[in3 + i];
+                }
+                out[r * m + j] = s0;
+                out[(r + 1) * m + j] = s1;
+                out[(r + 2) * m + j] = s2;
+                out[(r + 3) * m + j] = s3;
+            }
+        }
+        for (; r < rows; r++) {
+            int in0 = r * n;
+            for (int j = 0, row = 0; j < m; j++, row += n) {
+                double s0 = bk[j];
+                for (int i = 0; i < n; i++) {
+                    s0 += wk[row + i] * in[in0 + i];
+                }
+                out[r * m + j] = s0;
+            }
+        }
+    }
+
+    /**
+     * Computes errors of all neurons for the last forward pass.
+     *
+     * @param ws
+     *            Workspace of the last forward pass
+     * @param t
+     *            Expected output
+     * @return Error of the sample
+     */
+    double backward(Workspace ws, double[] t) {
+        return backward(ws, t, 0);
+    }
+
+    /**
+     * Computes errors of all neurons for the last forward pass.
+     *
+     * @param ws
+     *            Workspace of the last forward pass
+     * @param t
+     *            Array holding the expected output
+     * @param offset
+     *            Index of the first expected output value
+     * @return Error of the sample, squared error or cross-entropy for the
+     *         softmax output layer
+     */
+    double backward(Workspace ws, double[] t, int offset) {
+        double[][] y = ws.y;
+        double[][] error = ws.error;
+        long[] timing = ws.backwardNanos;
+        long time = timing != null ? System.nanoTime() : 0;
+        int last = sizes.length - 1;
+        double[] o = y[last];
+        double[] d = error[last];
+        double sampleError = 0;
+        if (softmax) {
+            // cross-entropy of softmax outputs, its gradient is t - o
+            for (int j = 0; j < o.length; j++) {
+                double tj = t[offset + j];
+                d[j] = tj - o[j];
+                if (tj != 0) {
+                    sampleError -= tj * Math.log(Math.max(o[j], MIN_OUTPUT));
+                }
+            }
+        } else {
+            Activation activation = activations[last - 1];
+            for (int j = 0; j < o.length; j++) {
+                double diff = t[offset + j] - o[j];
+                d[j] = activation.derivative(o[j]) * diff;
+                sampleError += diff * diff;
+            }
+        }
+        if (timing != null) {
+            long now = System.nanoTime();
+            timing[last - 1] += now - time;
+            time = now;
+        }
+        for (int k = last - 1; k > 0; k--) {
+            double[] wk = w[k];
+            double[] next = error[k + 1];
+            double[] s = error[k];
+            double[] yk = y[k];
+            Activation activation = activations[k - 1];
+            int n = sizes[k];
+            for (int i = 0; i < n; i++) {
+                s[i] = 0;
+            }
+            // weighted error, accumulated row by row
+            for (int j = 0, row = 0; j < next.length; j++, row += n) {
+                double ej = next[j];
+                for (int i = 0; i < n; i++) {
+                    s[i] += ej * wk[row + i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                s[i] *= activation.derivative(yk[i]);
+            }
+            if (timing != null) {
+                long now = System.nanoTime();
+                timing[k - 1] += now - time;
+                time = now;
+            }
+        }
+        return sampleError;
+    }
+
+    /**
+     * Error of the last forward pass, without computing errors of neurons.
+     *
+     * @param ws
+     *            Workspace of the last forward pass
+     * @param t
+     *            Array holding the expected output
+     * @param offset
+     *            Index of the first expected output value
+     * @return Error of the sample, the same as returned by the backward pass
+     */
+    double error(Workspace ws, double[] t, int offset) {
+        double[] o = ws.y[sizes.length - 1];
+        double sampleError = 0;
+        for (int j = 0; j < o.length; j++) {
+            double tj = t[offset + j];
+            if (softmax) {
+                if (tj != 0) {
+                    sampleError -= tj * Math.log(Math.max(o[j], MIN_OUTPUT));
+                }
+            } else {
+                double diff = tj - o[j];
+                sampleError += diff * diff;
+            }
+        }
+        return sampleError;
+    }
+
+    /**
+     * @param sumE
+     *            Sum of errors of samples returned by backward passes
+     * @param samples
+     *            Number of samples
+     * @return Mean square error divided by 2 or mean cross-entropy for the
+     *         softmax output layer
+     */
+    double meanError(double sumE, int samples) {
+        return softmax ? sumE / samples : sumE / (2 * samples);
+    }
+
+    /**
+     * Trains on rows of the samples in the given order, the loop of every
+     * serial training. Batches are counted from the start of the epoch, a
+     * batch that isn't full at the end of the rows stays accumulated.
+     *
+     * @param ws
+     *            Workspace of the passes
+     * @param samples
+     *            Samples, only read
+     * @param order
+     *            Indexes of rows of the samples
+     * @param from
+     *            Index in order of the first trained row
+     * @param to
+     *            Index in order after the last trained row
+     * @param trained
+     *            Number of samples trained earlier in the same epoch
+     * @param lr
+     *            Learning rate
+     * @param stohastic
+     *            If weights are corrected after every sample
+     * @param batchSize
+     *            Number of samples whose corrections are accumulated before
+     *            they are applied, ignored if stohastic
+     * @return Sum of errors of the trained rows
+     */
+    double train(Workspace ws, Dataset samples, int[] order, int from,
+            int to, int trained, double lr, boolean stohastic,
+            int batchSize) {
+        double sumE = 0;
+        for (int p = from; p < to; p++) {
+            int s = order[p];
+            forward(ws, samples.x, samples.inputOffset(s));
+            sumE += backward(ws, samples.t, samples.outputOffset(s));
+            if (stohastic) {
+                correctWeights(ws, lr);
+            } else {
+                accumulateWeights(ws);
+                if ((trained + p - from + 1) % batchSize == 0) {
+                    addAccumulatedError(lr);
+                }
+            }
+        }
+        return sumE;
+    }
+
+    // applies corrections of the last sample to weights and bias
+    void correctWeights(Workspace ws, double lr) {
+        correctWeights(ws, e, eb, lr);
+    }
+
+    // applies corrections of the last sample to weights and bias, buffers
+    // hold the raw corrections when the optimizer isn't direct
+    void correctWeights(Workspace ws, double[][] bufferW, double[][] bufferB,
+            double lr) {
+        if (optimizer.direct()) {
+            addCorrections(ws, w, b, lr);
+            StepStats stats = stepStats;
+            if (stats != null) {
+                stats.directStep(ws, lr);
+            }
+        } else {
+            addCorrections(ws, bufferW, bufferB, 1);
+            applyCorrections(bufferW, bufferB, lr);
+        }
+    }
+
+    // adds raw corrections of the last sample to the accumulated corrections
+    void accumulateWeights(Workspace ws) {
+        addCorrections(ws, e, eb, 1);
+    }
+
+    void addCorrections(Workspace ws, double[][] target, double[][] targetB,
+            double lr) {
+        double[][] y = ws.y;
+        double[][] error = ws.error;
+        // counted with the backward pass
+        long[] timing = ws.backwardNanos;
+        long time = timing != null ? System.nanoTime() : 0;
+        for (int k = 0; k < target.length; k++) {
+            double[] tk = target[k];
+            double[] tb = targetB[k];
+            double[] in = y[k];
+            double[] next = error[k + 1];
+            int n = sizes[k];
+            for (int j = 0, row = 0; j < next.length; j++, row += n) {
+                double c = lr * next[j];
+                for (int i = 0; i < n; i++) {
+                    tk[row + i] += c * in[i];
+                }
+                tb[j] += c;
+            }
+            if (timing != null) {
+                long now = System.nanoTime();
+                timing[k] += now - time;
+                time = now;
+            }
+        }
+    }
+
+    // applies accumulated corrections with the optimizer and clears them
+    void addAccumulatedError(double lr) {
+        applyCorrections(e, eb, lr);
+    }
+
+    // one optimizer step with the given raw corrections, clears them
+    void applyCorrections(double[][] correctionsW, double[][] correctionsB,
+            double lr) {
+        StepStats stats = stepStats;
+        optimizer.beginStep();
+        for (int k = 0; k < w.length; k++) {
+            // corrections are cleared by the update
+            double gradient = stats != null ? StepStats.squares(
+                    correctionsW[k]) + StepStats.squares(correctionsB[k]) : 0;
+            double update = optimizer.update(2 * k, w[k], correctionsW[k], lr)
+                    + optimizer.update(2 * k + 1, b[k], correctionsB[k], lr);
+            if (stats != null) {
+                stats.add(k, gradient, update);
+            }
+        }
+        if (stats != null) {
+            stats.endStep();
+        }
+    }
+
+    /**
+     * Builds the object view of the network, used only for debugging.
+     * Returned layers are copies, changing them doesn't affect the network.
+     *
+     * @param ws
+     *            Workspace whose outputs and errors are copied to neurons
+     * @return Layers with neurons holding current weights, outputs and errors
+     */
+    Layer[] toLayers(Workspace ws) {
+        double[][] y = ws.y;
+        double[][] error = ws.error;
+        Layer[] layers = new Layer[sizes.length];
+        for (int k = 0; k < sizes.length; k++) {
+            layers[k] = new Layer(sizes[k]);
+            for (int i = 0; i < sizes[k]; i++) {
+                Neuron neuron = new Neuron();
+                neuron.k = k;
+                neuron.i = i;
+                neuron.y = y[k][i];
+                neuron.error = error[k][i];
+                if (k < sizes.length - 1) {
+                    int out = sizes[k + 1];
+                    neuron.w = new double[out];
+                    neuron.e = new double[out];
+                    for (int j = 0; j < out; j++) {
+                        neuron.w[j] = w[k][j * sizes[k] + i];
+                        neuron.e[j] = e[k][j * sizes[k] + i];
+                    }
+                }
+                layers[k].neurons[i] = neuron;
+            }
+        }
+        return layers;
+    }
+}
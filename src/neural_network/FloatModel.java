@@ -0,0 +1,116 @@
+package neural_network;
+
+/**
+ * Single precision copy of a trained model for inference. Weights take half
+ * the memory of the double model, outputs usually differ from it only
+ * after the sixth decimal. Like {@link TrainedModel} it is immutable and can
+ * be shared between threads.
+ */
+public class FloatModel implements InferenceModel {
+    private final int[] sizes;
+    // same layout as weights of the double model
+    private final float[][] w;
+    private final float[][] b;
+    private final int M;
+    private final Activation[] activations;
+    private final boolean softmax;
+    private final ThreadLocal<float[][]> workspace = new ThreadLocal<float[][]>() {
+        @Override
+        protected float[][] initialValue() {
+            float[][] y = new float[sizes.length][];
+            for (int k = 0; k < sizes.length; k++) {
+                y[k] = new float[sizes[k]];
+            }
+            return y;
+        }
+    };
+
+    FloatModel(FlatNetwork net, int M) {
+        this.sizes = net.sizes.clone();
+        this.M = M;
+        this.activations = net.activations;
+        this.softmax = net.softmax;
+        w = new float[net.w.length][];
+        b = new float[net.b.length][];
+        for (int k = 0; k < net.w.length; k++) {
+            w[k] = new float[net.w[k].length];
+            for (int i = 0; i < w[k].length; i++) {
+                w[k][i] = (float) net.w[k][i];
+            }
+            b[k] = new float[net.b[k].length];
+            for (int i = 0; i < b[k].length; i++) {
+                b[k][i] = (float) net.b[k][i];
+            }
+        }
+    }
+
+    @Override
+    public int getM() {
+        return M;
+    }
+
+    @Override
+    public int inputSize() {
+        return sizes[0];
+    }
+
+    @Override
+    public int outputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    @Override
+    public int infer(double[] x, double[] output) {
+        float[][] y = workspace.get();
+        for (int i = 0; i < sizes[0]; i++) {
+            y[0][i] = (float) x[i];
+        }
+        for (int k = 0; k < w.length; k++) {
+            float[] wk = w[k];
+            float[] bk = b[k];
+            float[] in = y[k];
+            float[] out = y[k + 1];
+            int n = sizes[k];
+            Activation activation = activations[k];
+            for (int j = 0, row = 0; j < out.length; j++, row += n) {
+                float net = bk[j];
+                for (int i = 0; i < n; i++) {
+                    net += wk[row + i] * in[i];
+                }
+                out[j] = activation == null ? net : (float) activation
+                        .apply(net);
+            }
+        }
+        float[] result = y[y.length - 1];
+        if (softmax) {
+            softmax(result);
+        }
+        int maxIndex = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] > result[maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        if (output != null) {
+            for (int i = 0; i < result.length; i++) {
+                output[i] = result[i];
+            }
+        }
+        return maxIndex;
+    }
+
+    private static void softmax(float[] o) {
+        float max = o[0];
+        for (int i = 1; i < o.length; i++) {
+            max = Math.max(max, o[i]);
+        }
+        float sum = 0;
+        for (int i = 0; i < o.length; i++) {
+            o[i] = (float) Math.exp(o[i] - max);
+            sum += o[i];
+        }
+        for (int i = 0; i < o.length; i++) {
+            o[i] /= sum;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package neural_network;
+
+/**
+ * Evaluation of the network trained on all folds but one on the remaining
+ * fold, see {@link CrossValidation}.
+ */
+public class FoldResult {
+    private final int fold;
+    private final int trainingSamples;
+    private final int epochs;
+    private final double error;
+    private final long trainingNanos;
+    private final long evaluationNanos;
+    private final ConfusionMatrix confusion;
+
+    FoldResult(int fold, int trainingSamples, int epochs, double error,
+            long trainingNanos, long evaluationNanos,
+            ConfusionMatrix confusion) {
+        this.fold = fold;
+        this.trainingSamples = trainingSamples;
+        this.epochs = epochs;
+        this.error = error;
+        this.trainingNanos = trainingNanos;
+        this.evaluationNanos = evaluationNanos;
+        this.confusion = confusion;
+    }
+
+    public int getFold() {
+        return fold;
+    }
+
+    public int getTrainingSamples() {
+        return trainingSamples;
+    }
+
+    public long getTestSamples() {
+        return confusion.total();
+    }
+
+    public int getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * @return Mean training error in the last epoch
+     */
+    public double getError() {
+        return error;
+    }
+
+    public ConfusionMatrix getConfusion() {
+        return confusion;
+    }
+
+    public double getAccuracy() {
+        return confusion.accuracy();
+    }
+
+    public long getTrainingMillis() {
+        return trainingNanos / 1000000L;
+    }
+
+    /**
+     * @return Training samples processed per second, counting every epoch
+     */
+    public double getTrainingSamplesPerSecond() {
+        return trainingNanos == 0 ? 0
+                : (double) trainingSamples * epochs * 1e9 / trainingNanos;
+    }
+
+    /**
+     * @return Test samples recognized per second
+     */
+    public double getTestSamplesPerSecond() {
+        return evaluationNanos == 0 ? 0
+                : confusion.total() * 1e9 / evaluationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Fold %d: accuracy %.4f of %d, error %.5f after"
+                + " %d epochs, training %d ms (%.0f samples/s), test %.0f"
+                + " samples/s", fold, getAccuracy(), getTestSamples(), error,
+                epochs, getTrainingMillis(), getTrainingSamplesPerSecond(),
+                getTestSamplesPerSecond());
+    }
+}
@@ -0,0 +1,308 @@
+package neural_network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Searches for hyperparameters by training many networks at once. Every
+ * trial trains its own network serially on one of a bounded number of
+ * threads, all trials read the same samples, they only keep their own order
+ * of sample indexes. A random part of the samples is kept aside to rank the
+ * trials by their validation error. The time every trial needed to get the
+ * training error below the target is reported too.
+ *
+ * Trials get their seeds in the order they are created, so a search with
+ * the same seed trains the same networks no matter how many threads run it.
+ */
+public class HyperparameterSearch {
+    private final Dataset samples;
+    private final int[] trainingRows;
+    private final int[] validationRows;
+    private final double targetError;
+    private final Random random;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param samples
+     *            Samples shared by all trials, they are not copied
+     * @param validationFraction
+     *            Part of samples used only to rank the trials
+     * @param targetError
+     *            Training error whose time to reach is reported
+     * @param seed
+     *            Seed of the validation split and of all trials
+     */
+    public HyperparameterSearch(Dataset samples, double validationFraction,
+            double targetError, long seed) {
+        if (validationFraction <= 0 || validationFraction >= 1
+                || samples.rows < 2) {
+            throw new IllegalArgumentException(
+                    "Validation samples and training samples can't be empty.");
+        }
+        this.samples = samples;
+        this.targetError = targetError;
+        this.random = new Random(seed);
+        int[] order = new int[samples.rows];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        int validation = Math.min(order.length - 1, Math.max(1,
+                (int) Math.round(order.length * validationFraction)));
+        validationRows = Arrays.copyOfRange(order, 0, validation);
+        trainingRows = Arrays.copyOfRange(order, validation, order.length);
+    }
+
+    /**
+     * @param threads
+     *            Number of trials trained at once
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads should be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Trains every combination of the search space for the same number of
+     * epochs. Trials that diverge are stopped.
+     *
+     * @throws NeuralNetworkException
+     *             If an architecture or optimizer is not valid
+     */
+    public SearchReport grid(SearchSpace space, int epochs)
+            throws NeuralNetworkException {
+        return successiveHalving(space.grid(), epochs, epochs, 2);
+    }
+
+    /**
+     * Trains randomly chosen hyperparameters for the same number of epochs.
+     * Trials that diverge are stopped.
+     *
+     * @throws NeuralNetworkException
+     *             If an architecture or optimizer is not valid
+     */
+    public SearchReport random(SearchSpace space, int trials, int epochs)
+            throws NeuralNetworkException {
+        return successiveHalving(sample(space, trials), epochs, epochs, 2);
+    }
+
+    /**
+     * Trains all candidates for a few epochs, keeps the best 1/eta of them
+     * by validation error and continues them for eta times more epochs,
+     * until one is left or the maximum number of epochs is trained.
+     *
+     * @param candidates
+     *            Hyperparameters to try
+     * @param minEpochs
+     *            Epochs every candidate trains
+     * @param maxEpochs
+     *            Epochs the best candidates train
+     * @param eta
+     *            Reduction factor, at least 2
+     * @throws NeuralNetworkException
+     *             If an architecture or optimizer is not valid
+     */
+    public SearchReport successiveHalving(List<Hyperparameters> candidates,
+            int minEpochs, int maxEpochs, int eta)
+            throws NeuralNetworkException {
+        long start = System.nanoTime();
+        List<Trial> trials = createTrials(candidates);
+        run(trials, minEpochs, maxEpochs, eta);
+        return report(trials, start);
+    }
+
+    /**
+     * Runs successive halving in brackets that start from different numbers
+     * of epochs, from many candidates trained briefly to a few candidates
+     * trained with the full budget. Candidates are chosen randomly.
+     *
+     * @param maxEpochs
+     *            Epochs the best candidates train
+     * @param eta
+     *            Reduction factor, at least 2
+     * @throws NeuralNetworkException
+     *             If an architecture or optimizer is not valid
+     */
+    public SearchReport hyperband(SearchSpace space, int maxEpochs, int eta)
+            throws NeuralNetworkException {
+        long start = System.nanoTime();
+        int brackets = 0;
+        for (long r = maxEpochs; r >= eta; r /= eta) {
+            brackets++;
+        }
+        List<Trial> all = new ArrayList<Trial>();
+        for (int s = brackets; s >= 0; s--) {
+            long power = (long) Math.pow(eta, s);
+            int n = (int) Math.ceil((double) (brackets + 1) / (s + 1)
+                    * power);
+            int minEpochs = (int) Math.max(1, maxEpochs / power);
+            List<Trial> trials = createTrials(sample(space, n));
+            run(trials, minEpochs, maxEpochs, eta);
+            all.addAll(trials);
+        }
+        return report(all, start);
+    }
+
+    private List<Hyperparameters> sample(SearchSpace space, int n) {
+        List<Hyperparameters> candidates = new ArrayList<Hyperparameters>();
+        for (int i = 0; i < n; i++) {
+            candidates.add(space.sample(random));
+        }
+        return candidates;
+    }
+
+    private List<Trial> createTrials(List<Hyperparameters> candidates)
+            throws NeuralNetworkException {
+        List<Trial> trials = new ArrayList<Trial>();
+        for (Hyperparameters hyperparameters : candidates) {
+            trials.add(new Trial(hyperparameters, random.nextLong()));
+        }
+        return trials;
+    }
+
+    private void run(List<Trial> trials, int minEpochs, int maxEpochs,
+            int eta) throws NeuralNetworkException {
+        if (minEpochs < 1 || maxEpochs < minEpochs || eta < 2) {
+            throw new IllegalArgumentException("Invalid search budget.");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "hyperparameter-search");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            List<Trial> alive = new ArrayList<Trial>(trials);
+            int epochs = minEpochs;
+            while (true) {
+                trainAll(executor, alive, epochs);
+                if (alive.size() <= 1 || epochs >= maxEpochs) {
+                    break;
+                }
+                Collections.sort(alive, new Comparator<Trial>() {
+                    @Override
+                    public int compare(Trial a, Trial b) {
+                        return Double.compare(a.validationError,
+                                b.validationError);
+                    }
+                });
+                int kept = Math.max(1, alive.size() / eta);
+                for (Trial trial : alive.subList(kept, alive.size())) {
+                    trial.pruned = true;
+                }
+                alive = new ArrayList<Trial>(alive.subList(0, kept));
+                epochs = (int) Math.min(maxEpochs, (long) epochs * eta);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // trains the trials until they reach the given number of epochs
+    private void trainAll(ExecutorService executor, List<Trial> trials,
+            final int epochs) throws NeuralNetworkException {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Trial trial : trials) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    trial.train(epochs);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new NeuralNetworkException("Trial failed: "
+                    + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException(
+                    "Interrupted while searching hyperparameters.");
+        }
+    }
+
+    private SearchReport report(List<Trial> trials, long start) {
+        List<TrialResult> results = new ArrayList<TrialResult>();
+        for (Trial trial : trials) {
+            results.add(trial.result());
+        }
+        return new SearchReport(results,
+                (System.nanoTime() - start) / 1000000L);
+    }
+
+    // one network being trained with its hyperparameters
+    private class Trial {
+        private final Hyperparameters hyperparameters;
+        private final SubsetTrainer trainer;
+        private int epochs;
+        private double error = Double.NaN;
+        private double validationError = Double.NaN;
+        private long trainingNanos;
+        private long timeToTarget = -1;
+        private boolean diverged;
+        private boolean pruned;
+
+        Trial(Hyperparameters hyperparameters, long seed)
+                throws NeuralNetworkException {
+            this.hyperparameters = hyperparameters;
+            Random random = new Random(seed);
+            FlatNetwork net = hyperparameters.newNetwork(samples.inputs,
+                    samples.outputs, new Random(random.nextLong()));
+            trainer = new SubsetTrainer(net, samples, trainingRows,
+                    hyperparameters.stohastic(),
+                    hyperparameters.updateSize(trainingRows.length),
+                    new Random(random.nextLong()));
+        }
+
+        void train(int untilEpoch) {
+            double lr = hyperparameters.getLearningRate();
+            while (epochs < untilEpoch && !diverged) {
+                long start = System.nanoTime();
+                error = trainer.epoch(lr);
+                trainingNanos += System.nanoTime() - start;
+                epochs++;
+                if (Double.isNaN(error) || Double.isInfinite(error)) {
+                    diverged = true;
+                } else if (timeToTarget < 0 && error < targetError) {
+                    timeToTarget = trainingNanos;
+                }
+            }
+            validationError = diverged ? Double.NaN
+                    : trainer.error(validationRows);
+        }
+
+        TrialResult result() {
+            double accuracy = diverged ? 0
+                    : trainer.accuracy(validationRows);
+            return new TrialResult(hyperparameters, epochs, error,
+                    validationError, accuracy, trainingNanos / 1000000L,
+                    timeToTarget < 0 ? -1 : timeToTarget / 1000000L,
+                    pruned || diverged);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package neural_network;
+
+import java.util.Random;
+
+/**
+ * Parameters of one training tried by {@link HyperparameterSearch}.
+ */
+public class Hyperparameters {
+    private static final String[] ALGORITHMS = { "B", "SB", "MBB", "ASB" };
+
+    private final String architecture;
+    private final double learningRate;
+    private final int batchSize;
+    private final int algorithm;
+    private final String optimizer;
+
+    /**
+     * @param architecture
+     *            Architecture as accepted by
+     *            {@link NeuralNetwork#train(String, String, String, String, String, int)}
+     * @param learningRate
+     *            Learning rate
+     * @param batchSize
+     *            Batch size of mini-batch backpropagation
+     * @param algorithm
+     *            0 - backpropagation, 1 - stohastic, 2 - mini-batch, 3 -
+     *            asynchronous stohastic backpropagation
+     * @param optimizer
+     *            Name of the optimizer, see {@link Optimizer#forName(String)}
+     */
+    public Hyperparameters(String architecture, double learningRate,
+            int batchSize, int algorithm, String optimizer) {
+        if (algorithm < 0 || algorithm >= ALGORITHMS.length
+                || batchSize < 1 || !(learningRate > 0)) {
+            throw new IllegalArgumentException("Invalid hyperparameters.");
+        }
+        this.architecture = architecture;
+        this.learningRate = learningRate;
+        this.batchSize = batchSize;
+        this.algorithm = algorithm;
+        this.optimizer = optimizer;
+    }
+
+    public String getArchitecture() {
+        return architecture;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getOptimizer() {
+        return optimizer;
+    }
+
+    // are weights corrected after every sample, a trial trains
+    // asynchronous stohastic backpropagation serially
+    boolean stohastic() {
+        return algorithm == 1 || algorithm == 3;
+    }
+
+    // number of samples of one weight update when training on the given
+    // number of rows
+    int updateSize(int rows) {
+        return algorithm == 0 ? rows : batchSize;
+    }
+
+    /**
+     * Creates network of the architecture with initial weights and its own
+     * optimizer, optimizers keep state so networks can't share them.
+     *
+     * @param inputs
+     *            Number of inputs of the samples
+     * @param outputs
+     *            Number of outputs of the samples
+     * @param random
+     *            Source of the initial weights
+     * @throws NeuralNetworkException
+     *             If the architecture or the optimizer is not valid or the
+     *             architecture doesn't fit the samples
+     */
+    FlatNetwork newNetwork(int inputs, int outputs, Random random)
+            throws NeuralNetworkException {
+        Architecture arch = Architecture.parse(architecture,
+                new SigmoidActivation());
+        if (arch.sizes[0] != inputs
+                || arch.sizes[arch.sizes.length - 1] != outputs) {
+            throw new NeuralNetworkException("Architecture " + architecture
+                    + " doesn't fit the samples.");
+        }
+        FlatNetwork net = new FlatNetwork(arch);
+        net.initialize(WeightInitialization.AUTO, random);
+        net.setOptimizer(Optimizer.forName(optimizer));
+        return net;
+    }
+
+    @Override
+    public String toString() {
+        return architecture + " " + ALGORITHMS[algorithm]
+                + (algorithm == 2 ? " batch " + batchSize : "") + " "
+                + optimizer + " lr " + learningRate;
+    }
+}
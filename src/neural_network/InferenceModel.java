@@ -0,0 +1,29 @@
+package neural_network;
+
+/**
+ * Model that recognizes gestures. {@link TrainedModel} and its single
+ * precision and quantized copies implement it, so they can replace each
+ * other wherever only single gestures are recognized.
+ */
+public interface InferenceModel {
+    /**
+     * @return Number of points in the gesture representation
+     */
+    int getM();
+
+    int inputSize();
+
+    int outputSize();
+
+    /**
+     * Recognizes gesture given as network input.
+     * 
+     * @param x
+     *            Gesture representation x1 y1 x2 y2 ... of length 2*M
+     * @param output
+     *            Array of output layer's size that receives the network's
+     *            output, may be null
+     * @return Index of the recognized gesture, 0 for alpha to 4 for epsilon
+     */
+    int infer(double[] x, double[] output);
+}
@@ -0,0 +1,111 @@
+package neural_network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Like HdrHistogram it uses
+ * log-linear buckets, every power of two is split into 16 buckets, so
+ * recorded values keep about 6% precision at any magnitude while the
+ * histogram stays under 8 KB. Recording never allocates.
+ */
+public class LatencyHistogram {
+    // values below this are counted exactly
+    private static final int LINEAR = 32;
+    // buckets per power of two above LINEAR
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = LINEAR + (63 - 5) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos
+     *            Recorded latency, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BITS;
+        return LINEAR + (msb - 5) * SUB + (int) (value >>> shift) - SUB;
+    }
+
+    // smallest value counted in the bucket
+    private static long lowerBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int msb = (index - LINEAR) / SUB + 5;
+        int sub = (index - LINEAR) % SUB + SUB;
+        return (long) sub << (msb - SUB_BITS);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile
+     *            Percentile between 0 and 100
+     * @return Latency in nanoseconds at or below which the given percent of
+     *         recorded latencies lie, precise to the bucket, 0 if nothing is
+     *         recorded
+     */
+    public long getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                // upper end of the bucket, never more than the maximum
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1
+                        : Long.MAX_VALUE;
+                return Math.min(upper, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Discards all recorded values. Values recorded while resetting may be
+     * partly lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
@@ -0,0 +1,35 @@
+package neural_network;
+
+/**
+ * Rectified linear unit that passes a small part of negative values, so
+ * neurons with negative net still learn.
+ */
+public class LeakyReluActivation implements Activation {
+    private final double slope;
+
+    public LeakyReluActivation() {
+        this(0.01);
+    }
+
+    /**
+     * @param slope
+     *            Slope for negative values, between 0 and 1
+     */
+    public LeakyReluActivation(double slope) {
+        this.slope = slope;
+    }
+
+    public double getSlope() {
+        return slope;
+    }
+
+    @Override
+    public double apply(double net) {
+        return net > 0 ? net : slope * net;
+    }
+
+    @Override
+    public double derivative(double y) {
+        return y > 0 ? 1 : slope;
+    }
+}
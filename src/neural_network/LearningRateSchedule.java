@@ -0,0 +1,15 @@
+package neural_network;
+
+/**
+ * Changes the learning rate from epoch to epoch.
+ */
+public interface LearningRateSchedule {
+    /**
+     * @param lr
+     *            Learning rate the training started with
+     * @param epoch
+     *            Number of the epoch, starting from 0
+     * @return Learning rate used in the epoch
+     */
+    double rate(double lr, int epoch);
+}
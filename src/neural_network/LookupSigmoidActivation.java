@@ -0,0 +1,65 @@
+package neural_network;
+
+/**
+ * Sigmoid interpolated linearly between values precomputed at equally spaced
+ * points of [-range, range], outside of the range the value at its bound is
+ * used. Maximum error is the larger of step^2 / 80 and 1 / (1 + e^range),
+ * where step = 2 * range / resolution. With the default range 8 and
+ * resolution 1024 it is 3.4e-4, coming from the values outside of the range,
+ * within the range the error is below 3.1e-6.
+ */
+public class LookupSigmoidActivation extends SigmoidActivation {
+    private final double range;
+    private final int resolution;
+    // 1 / step
+    private final double scale;
+    private final double[] table;
+
+    public LookupSigmoidActivation() {
+        this(8, 1024);
+    }
+
+    /**
+     * @param range
+     *            Table covers [-range, range]
+     * @param resolution
+     *            Number of intervals the range is split to
+     */
+    public LookupSigmoidActivation(double range, int resolution) {
+        if (range <= 0 || resolution < 1) {
+            throw new IllegalArgumentException(
+                    "Range and resolution should be positive.");
+        }
+        this.range = range;
+        this.resolution = resolution;
+        this.scale = resolution / (2 * range);
+        // one extra value so interpolation at the upper bound stays inside
+        table = new double[resolution + 2];
+        for (int i = 0; i < table.length; i++) {
+            double x = Math.min(-range + i / scale, range);
+            table[i] = 1.0 / (1.0 + Math.exp(-x));
+        }
+    }
+
+    public double getRange() {
+        return range;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    @Override
+    public double apply(double net) {
+        if (net <= -range) {
+            return table[0];
+        }
+        if (net >= range) {
+            return table[table.length - 1];
+        }
+        double position = (net + range) * scale;
+        int i = (int) position;
+        double fraction = position - i;
+        return table[i] + fraction * (table[i + 1] - table[i]);
+    }
+}
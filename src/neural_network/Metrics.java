@@ -0,0 +1,274 @@
+package neural_network;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of training and inference. While disabled, which is the default
+ * unless the system property neural_network.metrics is true, training and
+ * inference only check one flag per epoch or per inference. While enabled,
+ * every epoch measures its duration, time spent in every layer, norms of
+ * corrections and weight updates and allocated bytes, and every inference
+ * records its latency.
+ */
+public class Metrics implements MetricsMBean {
+    public static final String OBJECT_NAME = "neural_network:type=Metrics";
+
+    private volatile boolean enabled = Boolean
+            .getBoolean("neural_network.metrics");
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<MetricsSink>();
+    private final LatencyHistogram inference = new LatencyHistogram();
+    private final LatencyHistogram batchInference = new LatencyHistogram();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    // totals since the last reset
+    private volatile long epochs;
+    private volatile long samples;
+    private volatile EpochMetrics last;
+    // state of the epoch being measured, used only by the training thread
+    private long epochStart;
+    private long allocatedAtStart;
+
+    Metrics() {
+    }
+
+    /**
+     * Registers metrics with the platform MBean server.
+     */
+    void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.out.println("Can't register metrics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables measuring. A training already running picks the
+     * change up with its next epoch.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void addSink(MetricsSink sink) {
+        sinks.add(sink);
+    }
+
+    public void removeSink(MetricsSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * @return Metrics of the last measured epoch or null if none was measured
+     */
+    public EpochMetrics getLastEpoch() {
+        return last;
+    }
+
+    public LatencyHistogram getInferenceLatency() {
+        return inference;
+    }
+
+    public LatencyHistogram getBatchInferenceLatency() {
+        return batchInference;
+    }
+
+    /**
+     * Prepares the network and workspaces of the next epoch, turning timing
+     * on or off depending on whether metrics are enabled.
+     *
+     * @return true if the epoch is measured
+     */
+    boolean beginEpoch(FlatNetwork net, Workspace[] workspaces) {
+        boolean measured = enabled;
+        for (Workspace ws : workspaces) {
+            ws.setTiming(measured);
+        }
+        net.setStepStats(measured ? new StepStats(net) : null);
+        if (measured) {
+            allocatedAtStart = allocatedBytes();
+            epochStart = System.nanoTime();
+        }
+        return measured;
+    }
+
+    // collects measurements of an epoch started with beginEpoch
+    void endEpoch(int epoch, int epochSamples, double error,
+            FlatNetwork net, Workspace[] workspaces) {
+        long duration = System.nanoTime() - epochStart;
+        long allocated = allocatedBytes();
+        int layers = net.w.length;
+        long[] forward = new long[layers];
+        long[] backward = new long[layers];
+        for (Workspace ws : workspaces) {
+            if (ws.forwardNanos == null) {
+                continue;
+            }
+            for (int k = 0; k < layers; k++) {
+                forward[k] += ws.forwardNanos[k];
+                backward[k] += ws.backwardNanos[k];
+            }
+        }
+        StepStats stats = net.stepStats;
+        EpochMetrics metrics = new EpochMetrics(epoch, epochSamples, error,
+                duration, forward, backward, stats.meanGradientNorms(),
+                stats.meanUpdateNorms(),
+                allocated < 0 || allocatedAtStart < 0 ? -1 : allocated
+                        - allocatedAtStart);
+        last = metrics;
+        epochs++;
+        samples += epochSamples;
+        for (MetricsSink sink : sinks) {
+            sink.epochCompleted(metrics);
+        }
+    }
+
+    // stops measuring after the training
+    void endTraining(FlatNetwork net, Workspace[] workspaces) {
+        for (Workspace ws : workspaces) {
+            ws.setTiming(false);
+        }
+        net.setStepStats(null);
+    }
+
+    // bytes allocated so far by all live threads, -1 if not supported
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+        if (!sun.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : sun.getThreadAllocatedBytes(threads
+                .getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    void recordInference(long nanos) {
+        inference.record(nanos);
+    }
+
+    void recordBatchInference(long nanos) {
+        batchInference.record(nanos);
+    }
+
+    @Override
+    public long getEpochs() {
+        return epochs;
+    }
+
+    @Override
+    public long getSamples() {
+        return samples;
+    }
+
+    @Override
+    public double getLastEpochMillis() {
+        EpochMetrics metrics = last;
+        return metrics == null ? 0 : metrics.getDurationNanos() / 1e6;
+    }
+
+    @Override
+    public double getSamplesPerSecond() {
+        EpochMetrics metrics = last;
+        return metrics == null ? 0 : metrics.getSamplesPerSecond();
+    }
+
+    @Override
+    public double getLastError() {
+        EpochMetrics metrics = last;
+        return metrics == null ? Double.NaN : metrics.getError();
+    }
+
+    @Override
+    public long[] getForwardNanosPerLayer() {
+        EpochMetrics metrics = last;
+        return metrics == null ? new long[0] : metrics.getForwardNanos();
+    }
+
+    @Override
+    public long[] getBackwardNanosPerLayer() {
+        EpochMetrics metrics = last;
+        return metrics == null ? new long[0] : metrics.getBackwardNanos();
+    }
+
+    @Override
+    public double[] getGradientNorms() {
+        EpochMetrics metrics = last;
+        return metrics == null ? new double[0] : metrics.getGradientNorms();
+    }
+
+    @Override
+    public double[] getUpdateNorms() {
+        EpochMetrics metrics = last;
+        return metrics == null ? new double[0] : metrics.getUpdateNorms();
+    }
+
+    @Override
+    public long getAllocatedBytesPerEpoch() {
+        EpochMetrics metrics = last;
+        return metrics == null ? 0 : metrics.getAllocatedBytes();
+    }
+
+    @Override
+    public long getInferenceCount() {
+        return inference.getCount();
+    }
+
+    @Override
+    public double getInferenceMeanMicros() {
+        return inference.getMean() / 1e3;
+    }
+
+    @Override
+    public double getInferenceP50Micros() {
+        return inference.getPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getInferenceP99Micros() {
+        return inference.getPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getInferenceMaxMicros() {
+        return inference.getMax() / 1e3;
+    }
+
+    @Override
+    public long getBatchInferenceCount() {
+        return batchInference.getCount();
+    }
+
+    @Override
+    public double getBatchInferenceP99Micros() {
+        return batchInference.getPercentile(99) / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        epochs = 0;
+        samples = 0;
+        last = null;
+        inference.reset();
+        batchInference.reset();
+    }
+}
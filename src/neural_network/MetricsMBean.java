@@ -0,0 +1,47 @@
+package neural_network;
+
+/**
+ * JMX view of {@link Metrics}, registered as neural_network:type=Metrics.
+ * Times are in milliseconds unless the name says otherwise.
+ */
+public interface MetricsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getEpochs();
+
+    long getSamples();
+
+    double getLastEpochMillis();
+
+    double getSamplesPerSecond();
+
+    double getLastError();
+
+    long[] getForwardNanosPerLayer();
+
+    long[] getBackwardNanosPerLayer();
+
+    double[] getGradientNorms();
+
+    double[] getUpdateNorms();
+
+    long getAllocatedBytesPerEpoch();
+
+    long getInferenceCount();
+
+    double getInferenceMeanMicros();
+
+    double getInferenceP50Micros();
+
+    double getInferenceP99Micros();
+
+    double getInferenceMaxMicros();
+
+    long getBatchInferenceCount();
+
+    double getBatchInferenceP99Micros();
+
+    void reset();
+}
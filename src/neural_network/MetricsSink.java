@@ -0,0 +1,14 @@
+package neural_network;
+
+/**
+ * Receives metrics of every training epoch while metrics are enabled, for
+ * example to log them or to forward them to a monitoring system. Called on
+ * the training thread, so it should return quickly.
+ */
+public interface MetricsSink {
+    /**
+     * @param metrics
+     *            Measurements of the epoch that just finished
+     */
+    void epochCompleted(EpochMetrics metrics);
+}
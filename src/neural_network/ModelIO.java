@@ -0,0 +1,270 @@
+package neural_network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary model format. All values are big-endian:
+ * 
+ * <pre>
+ * int      magic "NNMD"
+ * int      version
+ * int      M
+ * int      number of layers L
+ * int[L]   layer sizes
+ * int[L-1] transfer functions of layers 1 to L-1, 0 - sigmoid, 1 - tanh,
+ *          2 - relu, 3 - leaky relu, 4 - softmax, 5 - lookup sigmoid,
+ *          6 - rational sigmoid
+ * 0 or 4 bytes of padding, weights start at a multiple of 8
+ * for every layer k &lt; L-1:
+ *   double[sizes[k+1] * sizes[k]] weights, row-major
+ *   double[sizes[k+1]]            bias
+ * long   CRC32 of all preceding bytes
+ * </pre>
+ * 
+ * Version 1 files, which hold only sigmoid networks, have a single int 0
+ * between M and L instead of the transfer functions and are still loaded.
+ * Leaky relu layers are stored only with the default slope and lookup
+ * sigmoid layers only with the default range and resolution.
+ * 
+ * Models are loaded by mapping the file to memory and copying every weight
+ * array in one bulk operation, so processes loading the same model share the
+ * page cache.
+ */
+public class ModelIO {
+    private static final int MAGIC = 0x4E4E4D44;
+    private static final int VERSION = 2;
+    private static final int SIGMOID = 0;
+    private static final int TANH = 1;
+    private static final int RELU = 2;
+    private static final int LEAKY_RELU = 3;
+    private static final int SOFTMAX = 4;
+    private static final int LOOKUP_SIGMOID = 5;
+    private static final int RATIONAL_SIGMOID = 6;
+
+    private ModelIO() {
+    }
+
+    /**
+     * Saves the model, the file is replaced only after the whole model is
+     * written.
+     * 
+     * @param model
+     *            Model to save
+     * @param file
+     *            Path of the model file
+     * @throws IOException
+     *             If the file can't be written
+     */
+    public static void save(TrainedModel model, String file)
+            throws IOException {
+        FlatNetwork net = model.network();
+        int[] sizes = net.sizes;
+        int header = headerSize(VERSION, sizes.length);
+        long size = header;
+        for (int k = 0; k < net.w.length; k++) {
+            size += 8L * (net.w[k].length + net.b[k].length);
+        }
+        size += 8;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Model is too large.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(model.getM());
+        buffer.putInt(sizes.length);
+        for (int layerSize : sizes) {
+            buffer.putInt(layerSize);
+        }
+        for (int k = 0; k < net.activations.length; k++) {
+            boolean softmax = net.softmax && k == net.activations.length - 1;
+            buffer.putInt(softmax ? SOFTMAX : activationId(net.activations[k]));
+        }
+        buffer.position(header);
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        for (int k = 0; k < net.w.length; k++) {
+            doubles.put(net.w[k]);
+            doubles.put(net.b[k]);
+        }
+        buffer.position(buffer.position() + 8 * doubles.position());
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        Path target = Paths.get(file).toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), "model", ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the model saved by {@link #save(TrainedModel, String)}.
+     * 
+     * @param file
+     *            Path of the model file
+     * @return Loaded model
+     * @throws IOException
+     *             If the file can't be read
+     * @throws NeuralNetworkException
+     *             If the file is not a valid model file
+     */
+    public static TrainedModel load(String file) throws IOException,
+            NeuralNetworkException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < headerSize(1, 0) + 8 || size > Integer.MAX_VALUE) {
+                throw new NeuralNetworkException("Invalid model file size.");
+            }
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(buffer);
+        }
+    }
+
+    private static TrainedModel read(ByteBuffer buffer)
+            throws NeuralNetworkException {
+        int end = buffer.limit() - 8;
+        ByteBuffer content = buffer.duplicate();
+        content.limit(end);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new NeuralNetworkException("Model file is corrupted.");
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new NeuralNetworkException("Not a model file.");
+        }
+        int version = buffer.getInt();
+        if (version != 1 && version != VERSION) {
+            throw new NeuralNetworkException("Unsupported model version "
+                    + version + ".");
+        }
+        int M = buffer.getInt();
+        if (version == 1 && buffer.getInt() != SIGMOID) {
+            throw new NeuralNetworkException("Unsupported activation.");
+        }
+        int L = buffer.getInt();
+        if (L < 2 || L > end / 4 || headerSize(version, L) > end) {
+            throw new NeuralNetworkException("Invalid number of layers.");
+        }
+        int[] sizes = new int[L];
+        long expected = headerSize(version, L);
+        for (int k = 0; k < L; k++) {
+            sizes[k] = buffer.getInt();
+            if (sizes[k] < 1) {
+                throw new NeuralNetworkException("Invalid layer size.");
+            }
+            if (k > 0) {
+                expected += 8L * (sizes[k - 1] + 1) * sizes[k];
+            }
+        }
+        if (expected != end) {
+            throw new NeuralNetworkException(
+                    "Model file doesn't match its architecture.");
+        }
+
+        Activation[] activations = new Activation[L - 1];
+        boolean softmax = false;
+        for (int k = 0; k < L - 1; k++) {
+            int id = version == 1 ? SIGMOID : buffer.getInt();
+            if (id == SOFTMAX && k == L - 2) {
+                softmax = true;
+            } else {
+                activations[k] = activation(id);
+            }
+        }
+
+        FlatNetwork net = new FlatNetwork(sizes, activations, softmax);
+        buffer.position(headerSize(version, L));
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        for (int k = 0; k < L - 1; k++) {
+            doubles.get(net.w[k]);
+            doubles.get(net.b[k]);
+        }
+        return new TrainedModel(net, M);
+    }
+
+    private static int activationId(Activation activation)
+            throws IOException {
+        if (activation.getClass() == SigmoidActivation.class) {
+            return SIGMOID;
+        }
+        if (activation instanceof LookupSigmoidActivation) {
+            LookupSigmoidActivation lookup =
+                    (LookupSigmoidActivation) activation;
+            LookupSigmoidActivation standard = new LookupSigmoidActivation();
+            if (lookup.getRange() == standard.getRange()
+                    && lookup.getResolution() == standard.getResolution()) {
+                return LOOKUP_SIGMOID;
+            }
+        }
+        if (activation.getClass() == RationalSigmoidActivation.class) {
+            return RATIONAL_SIGMOID;
+        }
+        if (activation instanceof TanhActivation) {
+            return TANH;
+        }
+        if (activation instanceof ReluActivation) {
+            return RELU;
+        }
+        if (activation instanceof LeakyReluActivation) {
+            double slope = ((LeakyReluActivation) activation).getSlope();
+            if (slope == new LeakyReluActivation().getSlope()) {
+                return LEAKY_RELU;
+            }
+        }
+        throw new IOException("Transfer function can't be saved.");
+    }
+
+    private static Activation activation(int id)
+            throws NeuralNetworkException {
+        switch (id) {
+        case SIGMOID:
+            return new SigmoidActivation();
+        case TANH:
+            return new TanhActivation();
+        case RELU:
+            return new ReluActivation();
+        case LEAKY_RELU:
+            return new LeakyReluActivation();
+        case LOOKUP_SIGMOID:
+            return new LookupSigmoidActivation();
+        case RATIONAL_SIGMOID:
+            return new RationalSigmoidActivation();
+        default:
+            throw new NeuralNetworkException("Unsupported activation " + id
+                    + ".");
+        }
+    }
+
+    // header size rounded up to a multiple of 8
+    private static int headerSize(int version, int layers) {
+        int ints = version == 1 ? 5 + layers : 4 + layers + layers - 1;
+        return (4 * ints + 7) & ~7;
+    }
+}
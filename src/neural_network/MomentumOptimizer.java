@@ -0,0 +1,48 @@
+package neural_network;
+
+/**
+ * Gradient descent with momentum, every step also repeats a part of the
+ * previous step, which speeds up descent along directions that stay the same
+ * and damps oscillations.
+ */
+public class MomentumOptimizer extends Optimizer {
+    // part of the previous step repeated
+    final double momentum;
+    // last step of every weight
+    double[][] velocity;
+
+    public MomentumOptimizer() {
+        this(0.9);
+    }
+
+    /**
+     * @param momentum
+     *            Part of the previous step repeated, between 0 and 1
+     */
+    public MomentumOptimizer(double momentum) {
+        this.momentum = momentum;
+    }
+
+    public double getMomentum() {
+        return momentum;
+    }
+
+    @Override
+    void reset(int[] lengths) {
+        super.reset(lengths);
+        velocity = allocate(lengths);
+    }
+
+    @Override
+    double update(int p, double[] params, double[] corrections, double lr) {
+        double[] v = velocity[p];
+        double squares = 0;
+        for (int i = 0; i < params.length; i++) {
+            v[i] = momentum * v[i] + lr * corrections[i];
+            params[i] += v[i];
+            corrections[i] = 0;
+            squares += v[i] * v[i];
+        }
+        return squares;
+    }
+}
@@ -0,0 +1,37 @@
+package neural_network;
+
+/**
+ * Nesterov accelerated gradient. Works like momentum but the corrections act
+ * as if they were computed after the momentum step, which makes it react
+ * sooner when the direction changes. Uses the usual reformulation where
+ * stored weights are the looked-ahead ones, so corrections computed by the
+ * ordinary passes can be used.
+ */
+public class NesterovOptimizer extends MomentumOptimizer {
+    public NesterovOptimizer() {
+        super();
+    }
+
+    /**
+     * @param momentum
+     *            Part of the previous step repeated, between 0 and 1
+     */
+    public NesterovOptimizer(double momentum) {
+        super(momentum);
+    }
+
+    @Override
+    double update(int p, double[] params, double[] corrections, double lr) {
+        double[] v = velocity[p];
+        double squares = 0;
+        for (int i = 0; i < params.length; i++) {
+            double previous = v[i];
+            v[i] = momentum * previous + lr * corrections[i];
+            double d = (1 + momentum) * v[i] - momentum * previous;
+            params[i] += d;
+            corrections[i] = 0;
+            squares += d * d;
+        }
+        return squares;
+    }
+}
@@ -1,10 +1,13 @@
 package neural_network;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import neural_network.gesture.DecimalPoint;
 import static neural_network.NeuralNetworkUI.alpha;
@@ -18,190 +21,993 @@ public class NeuralNetwork {
     private double lr;
     // minimum error
     private double minE;
-    // network architecture
-    private Layer[] layers;
+    // network architecture and weights
+    private FlatNetwork net;
+    // buffers of the training and inference passes
+    private Workspace ws;
+    // snapshot of the trained network used for inference
+    private final AtomicReference<TrainedModel> model = new AtomicReference<TrainedModel>();
     // number of points in gesture representation, determines size of input
     // layer (2*M)
     int M;
-    // sample's inputs
-    private ArrayList<double[]> samplesX;
-    // sample's outputs
-    private ArrayList<double[]> samplesT;
+    // samples' inputs and outputs
+    private Dataset samples;
     // 0 - backpropagation
     private int B = 0;
     // 1 - stohastic backpropagation
     private int SB = 1;
     // 2 - mini-batch propagation
     private int MBB = 2;
+    // 3 - asynchronous stohastic backpropagation
+    private int ASB = 3;
     private int batchSize = 5;
+    // pool and number of workers of the parallel trainer, 1 trains serially
+    private ForkJoinPool pool;
+    private int workers = 1;
+    // pool created by the network itself
+    private ForkJoinPool ownPool;
+    // number of trainings that may be running on the pool, own pools
+    // replaced meanwhile are shut down when the last of them ends
+    private int poolUsers;
+    private final ArrayList<ForkJoinPool> retiredPools =
+            new ArrayList<ForkJoinPool>();
+    // transfer functions used while training and by the trained model
+    private Activation trainingActivation = new SigmoidActivation();
+    private Activation inferenceActivation = new SigmoidActivation();
+    // turns corrections into weight updates and changes the learning rate
+    // from epoch to epoch
+    private Optimizer optimizer = new SgdOptimizer();
+    private LearningRateSchedule schedule = new ConstantSchedule();
+    // number of epochs trained since the network was initialized
+    private int epochs;
+    // limits of the training, 0 means no limit
+    private int maxEpochs;
+    private long timeBudget;
+    // part of the samples used for early stopping and number of epochs
+    // without improvement of their error before training stops
+    private double validationFraction;
+    private int patience = 10;
+    // notified about the progress at most once per interval in milliseconds
+    private volatile TrainingListener listener;
+    private long progressInterval = 1000;
+    // seed of the next training, null for a new random seed every
+    // training, and seed of the last training
+    private Long seed;
+    private volatile long lastSeed;
+    private WeightInitialization initialization = WeightInitialization.AUTO;
+    // are samples visited in a new random order every epoch
+    private boolean shuffle = true;
+    // random sources of the current training derived from its seed
+    private Random shuffleRandom;
+    private Random validationRandom;
+    // order in which samples are visited in the current epoch
+    private int[] order;
+    // number of update steps, batch size and learning rate of fine-tuning
+    private int fineTuneSteps = 100;
+    private int fineTuneBatchSize = 8;
+    private double fineTuneRate = 0.05;
+    // old samples mixed into fine-tuning batches, null if replay is
+    // disabled, and part of every batch taken from them
+    private int replayCapacity;
+    private double replayRatio;
+    private ReplayBuffer replay;
+    // number of fine-tunings since the last training
+    private volatile int fineTunings;
+    // last training or fine-tuning started on its own thread
+    private TrainingJob job;
+    private final Metrics metrics = new Metrics();
+    // recognitions of recently seen gestures, null if caching is disabled
+    private volatile RecognitionCache cache;
+    // trainers used when training with more than one worker
+    private ParallelTrainer parallelTrainer;
+    private AsyncTrainer asyncTrainer;
     private static NeuralNetwork nn;
     // is the network trained
-    protected boolean trained;
+    protected volatile boolean trained;
 
     private NeuralNetwork() {
+        metrics.register();
     }
 
-    static NeuralNetwork getInstance() {
+    static synchronized NeuralNetwork getInstance() {
         if (nn == null) {
-            return new NeuralNetwork();
-        } else {
-            return nn;
+            nn = new NeuralNetwork();
+        }
+        return nn;
+    }
+
+    /**
+     * @return Snapshot of the last trained network or null if the network
+     *         was never trained
+     */
+    public TrainedModel getModel() {
+        return model.get();
+    }
+
+    /**
+     * @return Samples the last training was trained on, without the
+     *         validation samples of early stopping, or null if nothing was
+     *         trained yet. Can be shared with {@link CrossValidation} and
+     *         {@link HyperparameterSearch}, which only read it.
+     */
+    public Dataset getSamples() {
+        return samples;
+    }
+
+    /**
+     * Recognizes all samples with the current model.
+     * 
+     * @param samples
+     *            Samples whose expected gestures are known
+     * @return Recognized gestures of the samples per expected gesture
+     * @throws NeuralNetworkException
+     *             If the network is not trained or samples don't fit it
+     */
+    public ConfusionMatrix evaluate(Dataset samples)
+            throws NeuralNetworkException {
+        TrainedModel trainedModel = trainedModel();
+        if (samples.inputs != trainedModel.inputSize()
+                || samples.outputs != trainedModel.outputSize()) {
+            throw new NeuralNetworkException(
+                    "Samples don't fit the network.");
+        }
+        // batches are small so the workspace of the batched pass stays small
+        int batch = 256;
+        double[] inputs = new double[batch * samples.inputs];
+        int[] classes = new int[batch];
+        ConfusionMatrix confusion = new ConfusionMatrix(samples.outputs);
+        for (int from = 0; from < samples.rows; from += batch) {
+            int rows = Math.min(batch, samples.rows - from);
+            System.arraycopy(samples.x, samples.inputOffset(from), inputs, 0,
+                    rows * samples.inputs);
+            inferBatch(inputs, rows, classes, null);
+            for (int r = 0; r < rows; r++) {
+                confusion.add(samples.label(from + r), classes[r]);
+            }
         }
+        return confusion;
     }
 
-    public void train(String file, String m, String architecture,
+    /**
+     * @return Metrics of training and inference, disabled by default
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Replaces the model used for inference. Inferences already running
+     * finish on the old model.
+     * 
+     * @param trainedModel
+     *            New model
+     */
+    public void setModel(TrainedModel trainedModel) {
+        M = trainedModel.getM();
+        model.set(trainedModel);
+        trained = true;
+    }
+
+    /**
+     * Trains the network on the calling thread until the minimum error or
+     * one of the limits set by {@link #setLimits(int, long)} and
+     * {@link #setEarlyStopping(double, int)} is reached. Only one training
+     * may run at a time.
+     * 
+     * @return Final state of the training
+     */
+    public TrainingProgress train(String file, String m, String architecture,
             String learningRate, String minError, int algVer) {
-        // parsing parameters
-        M = Integer.parseInt(m);
-        lr = Double.parseDouble(learningRate);
-        minE = Double.parseDouble(minError);
+        TrainingJob job = trainingJob(file, m, architecture, learningRate,
+                minError, algVer);
+        claimJob(job);
+        return job.run();
+    }
+
+    /**
+     * Starts training on a new thread, see
+     * {@link #train(String, String, String, String, String, int)}. Only one
+     * training may run at a time.
+     * 
+     * @return Job that can be cancelled or waited for
+     */
+    public TrainingJob trainAsync(String file, String m,
+            String architecture, String learningRate, String minError,
+            int algVer) {
+        TrainingJob job = trainingJob(file, m, architecture, learningRate,
+                minError, algVer);
+        claimJob(job);
+        job.start();
+        return job;
+    }
 
+    private TrainingJob trainingJob(final String file, final String m,
+            final String architecture, final String learningRate,
+            final String minError, final int algVer) {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        return new TrainingJob(cancelled, new Callable<TrainingProgress>() {
+            @Override
+            public TrainingProgress call() {
+                long start = System.nanoTime();
+                try {
+                    return train(file, m, architecture, learningRate,
+                            minError, algVer, cancelled);
+                } catch (RuntimeException e) {
+                    return crashed(e, start);
+                }
+            }
+        });
+    }
+
+    // makes the job the current one unless another one is still running
+    private synchronized void claimJob(TrainingJob job) {
+        if (this.job != null && !this.job.isDone()) {
+            throw new IllegalStateException("Network is already training.");
+        }
+        this.job = job;
+    }
+
+    // reports a training that failed unexpectedly like any failed training
+    private TrainingProgress crashed(RuntimeException e, long start) {
+        System.out.println(e + "\nNetwork training failed.");
+        return finished(failed(start));
+    }
+
+    /**
+     * Fine-tunes the current model with new samples on a new thread, see
+     * {@link #setFineTuning(int, int, double)}. Training continues from the
+     * current weights, inference keeps using the current model until the
+     * fine-tuned one replaces it. Fine-tunings started while another one is
+     * running wait for it. A fine-tuning that did all its steps stops with
+     * {@link StopReason#MAX_EPOCHS}, one whose model was replaced meanwhile
+     * is discarded and stops with {@link StopReason#MODEL_CHANGED}.
+     * 
+     * @param inputs
+     *            Gesture representations x1 y1 x2 y2 ..., one per sample
+     * @param labels
+     *            Index of the gesture of every sample, 0 for alpha to 4 for
+     *            epsilon
+     * @return Job that can be cancelled or waited for
+     * @throws NeuralNetworkException
+     *             If the network is not trained or samples don't fit it
+     */
+    public TrainingJob fineTune(double[][] inputs, int[] labels)
+            throws NeuralNetworkException {
+        TrainedModel current = trainedModel();
+        int n = current.inputSize();
+        int outputs = current.outputSize();
+        if (inputs.length != labels.length || inputs.length == 0) {
+            throw new NeuralNetworkException(
+                    "Every sample needs exactly one label.");
+        }
+        double[] x = new double[inputs.length * n];
+        double[] t = new double[inputs.length * outputs];
+        for (int r = 0; r < inputs.length; r++) {
+            if (inputs[r].length != n || labels[r] < 0
+                    || labels[r] >= outputs) {
+                throw new NeuralNetworkException("Sample " + r
+                        + " doesn't fit the network.");
+            }
+            System.arraycopy(inputs[r], 0, x, r * n, n);
+            t[r * outputs + labels[r]] = 1;
+        }
+        final Dataset fresh = new Dataset(x, t, inputs.length, n, outputs);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        synchronized (this) {
+            final TrainingJob previous = job;
+            job = new TrainingJob(cancelled, new Callable<TrainingProgress>() {
+                @Override
+                public TrainingProgress call() {
+                    if (previous != null) {
+                        try {
+                            previous.await();
+                        } catch (InterruptedException e) {
+                            cancelled.set(true);
+                        } catch (RuntimeException e) {
+                            // failure of the previous job was reported by it
+                        }
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        return fineTune(fresh, cancelled);
+                    } catch (RuntimeException e) {
+                        return crashed(e, start);
+                    }
+                }
+            });
+            job.start();
+            return job;
+        }
+    }
+
+    private TrainingProgress fineTune(Dataset fresh, AtomicBoolean cancelled) {
+        long start = System.nanoTime();
+        TrainedModel current = model.get();
+        FlatNetwork tuned = current.network().copy()
+                .withActivation(trainingActivation);
+        tuned.setOptimizer(new SgdOptimizer());
+        FineTuner tuner = new FineTuner(tuned, new Random(lastSeed
+                + ++fineTunings));
+        ReplayBuffer replay = this.replay;
+        if (replay != null && !replay.fits(fresh.inputs, fresh.outputs)) {
+            replay = null;
+        }
+        double E = tuner.tune(fresh, replay, replayRatio, fineTuneSteps,
+                fineTuneBatchSize, fineTuneRate, cancelled);
+        StopReason reason = StopReason.MAX_EPOCHS;
+        if (cancelled.get()) {
+            reason = StopReason.CANCELLED;
+        } else if (Double.isNaN(E) || Double.isInfinite(E)) {
+            reason = StopReason.DIVERGED;
+        } else if (!replaceModel(current, new TrainedModel(tuned.copy()
+                .withActivation(inferenceActivation), current.getM()))) {
+            reason = StopReason.MODEL_CHANGED;
+        } else if (replay != null) {
+            replay.addAll(fresh);
+        }
+        return finished(new TrainingProgress(fineTuneSteps, E, Double.NaN,
+                millis(start), reason));
+    }
+
+    // replaces the model only if it is still the expected one
+    private boolean replaceModel(TrainedModel expected,
+            TrainedModel trainedModel) {
+        if (!model.compareAndSet(expected, trainedModel)) {
+            return false;
+        }
+        M = trainedModel.getM();
+        trained = true;
+        return true;
+    }
+
+    // keeps a sample of training samples for fine-tuning
+    private void fillReplay(Dataset samples) {
+        replay = null;
+        if (replayCapacity > 0) {
+            replay = new ReplayBuffer(replayCapacity, samples.inputs,
+                    samples.outputs, new Random(lastSeed));
+            replay.addAll(samples);
+        }
+    }
+
+    private TrainingProgress train(String file, String m, String architecture,
+            String learningRate, String minError, final int algVer,
+            AtomicBoolean cancelled) {
+        long start = System.nanoTime();
+        if (!knownAlgorithm(algVer)
+                || !initialize(m, architecture, learningRate, minError)) {
+            return finished(failed(start));
+        }
         try {
-            initializeNN(architecture);
+            loadSamples(file);
         } catch (NeuralNetworkException e1) {
-            System.out
-                    .println(e1.getMessage()
-                            + "\nNetwork training failed during network initialization.");
-            return;
+            System.out.println(e1.getMessage()
+                    + "\nNetwork training failed while loading samples.");
+            return finished(failed(start));
+        }
+        Dataset validation = null;
+        if (validationFraction > 0) {
+            validation = splitValidation(validationRandom);
         }
-        loadSamples(file);
 
         // training
-        while (true) {
-            double[] errors = new double[samplesX.size()];
-            for (int sampleIndex = 0; sampleIndex < samplesX.size(); sampleIndex++) {
-                // assign sample to the network input
-                double[] y = samplesX.get(sampleIndex);
-                // forward pass
-                double[] o = forwardPassNN(y);
-                // expected output
-                double[] t = samplesT.get(sampleIndex);
-                // compute and store error for current sample
-                double e = 0;
-                for (int i = 0; i < o.length; i++) {
-                    e += Math.pow(t[i] - o[i], 2);
+        usePool();
+        try {
+            prepareTrainers(algVer);
+            TrainingProgress progress = trainEpochs(new EpochTrainer() {
+                @Override
+                public double epoch() {
+                    return NeuralNetwork.this.epoch(algVer);
+                }
+
+                @Override
+                public int samples() {
+                    return samples.rows;
                 }
-                errors[sampleIndex] = e;
 
-                // backward pass
-                // computing errors for neurons of the last layer
-                Layer outputLayer = layers[layers.length - 1];
-                for (Neuron n : outputLayer) {
-                    n.error = o[n.i] * (1 - o[n.i]) * (t[n.i] - o[n.i]);
+                @Override
+                public Workspace[] workspaces() {
+                    return trainingWorkspaces();
                 }
+            }, validation, cancelled, start);
+            if (progress.getStopReason() != StopReason.CANCELLED) {
+                fillReplay(samples);
+                fineTunings = 0;
+            }
+            return progress;
+        } catch (NeuralNetworkException e1) {
+            System.out.println(e1.getMessage()
+                    + "\nNetwork training failed.");
+            return finished(failed(start));
+        } finally {
+            releasePool();
+        }
+    }
 
-                // computing errors for the rest of the network
-                for (int k = layers.length - 2; k > 0; k--) {
-                    for (Neuron n : layers[k]) {
-                        double s = weightedError(n);
-                        n.error = n.y * (1 - n.y) * s;
+    /**
+     * Trains the network on a binary sample file without loading it whole,
+     * samples are read in chunks every epoch, chunks are visited in a random
+     * order and samples are shuffled within their chunk.
+     * Text sample files should be converted first with
+     * {@link SampleLoader#convert(String, String, int, int)}. Stohastic
+     * backpropagation variants correct weights serially. Stops like
+     * {@link #train(String, String, String, String, String, int)}, except
+     * that there is no early stopping since all samples are used for
+     * training. Only one training may run at a time.
+     * 
+     * @param file
+     *            Binary sample file
+     * @param chunkSize
+     *            Number of samples held in memory at once, at least 1
+     * @return Final state of the training
+     */
+    public TrainingProgress trainStreaming(final String file, final String m,
+            final String architecture, final String learningRate,
+            final String minError, final int algVer, final int chunkSize) {
+        TrainingJob job = new TrainingJob(new AtomicBoolean(),
+                new Callable<TrainingProgress>() {
+                    @Override
+                    public TrainingProgress call() {
+                        long start = System.nanoTime();
+                        try {
+                            return trainStreaming(file, m, architecture,
+                                    learningRate, minError, algVer,
+                                    chunkSize, start);
+                        } catch (RuntimeException e) {
+                            return crashed(e, start);
+                        }
                     }
+                });
+        claimJob(job);
+        return job.run();
+    }
+
+    private TrainingProgress trainStreaming(String file, String m,
+            String architecture, String learningRate, String minError,
+            int algVer, int chunkSize, long start) {
+        if (!knownAlgorithm(algVer)
+                || !initialize(m, architecture, learningRate, minError)) {
+            return finished(failed(start));
+        }
+        final boolean stohastic = algVer == SB || algVer == ASB;
+        try (final StreamingTrainer streamingTrainer = new StreamingTrainer(
+                net, file, chunkSize, shuffleRandom)) {
+            final int batch = algVer == B ? streamingTrainer.rows()
+                    : batchSize;
+            return trainEpochs(new EpochTrainer() {
+                @Override
+                public double epoch() throws NeuralNetworkException {
+                    double sumE = streamingTrainer.epoch(nextRate(),
+                            stohastic, batch);
+                    return E(sumE, streamingTrainer.rows());
+                }
+
+                @Override
+                public int samples() {
+                    return streamingTrainer.rows();
                 }
-                // correct or accumulate weights
-                correctOrAccumulateWeights(algVer);
 
-                // accumulate error if needed
-                if ((algVer == B && isLastSample(sampleIndex))
-                        || (algVer == MBB && batchFull(sampleIndex))) {
-                    addAccumulatedError();
+                @Override
+                public Workspace[] workspaces() {
+                    return new Workspace[] { streamingTrainer.workspace() };
                 }
+            }, null, new AtomicBoolean(), start);
+        } catch (IOException | NeuralNetworkException e1) {
+            System.out.println(e1.getMessage()
+                    + "\nNetwork training failed while reading samples.");
+            return finished(failed(start));
+        }
+    }
+
+    // trains epochs of one training
+    private interface EpochTrainer {
+        // trains one epoch, returns mean error
+        double epoch() throws NeuralNetworkException;
+
+        // number of samples trained per epoch
+        int samples();
+
+        // workspaces of the training passes
+        Workspace[] workspaces();
+    }
+
+    // workspaces used by the trainer of the current algorithm
+    private Workspace[] trainingWorkspaces() {
+        if (parallelTrainer != null) {
+            return parallelTrainer.workspaces();
+        }
+        if (asyncTrainer != null) {
+            return asyncTrainer.workspaces();
+        }
+        return new Workspace[] { ws };
+    }
+
+    // trains epochs until a stopping criterion is met, replaces the model
+    // unless training is cancelled
+    private TrainingProgress trainEpochs(EpochTrainer trainer,
+            Dataset validation, AtomicBoolean cancelled, long start)
+            throws NeuralNetworkException {
+        TrainingListener listener = this.listener;
+        long interval = progressInterval * 1000000L;
+        long budget = timeBudget * 1000000L;
+        long lastProgress = start;
+        // weights with the lowest validation error
+        FlatNetwork best = validation != null ? net.copy() : null;
+        double bestE = Double.POSITIVE_INFINITY;
+        int sinceBest = 0;
+        int epoch = 0;
+        double E = Double.NaN;
+        double validationE = Double.NaN;
+        StopReason reason = null;
+        Workspace[] workspaces = trainer.workspaces();
+        while (reason == null) {
+            if (cancelled.get()) {
+                reason = StopReason.CANCELLED;
+                break;
+            }
+            boolean measured = metrics.beginEpoch(net, workspaces);
+            E = trainer.epoch();
+            epoch++;
+            if (measured) {
+                metrics.endEpoch(epoch, trainer.samples(), E, net,
+                        workspaces);
             }
-            // mean square error
-            double E = E(errors);
-            System.out.println(E(errors));
+            if (validation != null) {
+                validationE = validationError(validation);
+                if (validationE < bestE) {
+                    bestE = validationE;
+                    sinceBest = 0;
+                    net.copyTo(best);
+                } else {
+                    sinceBest++;
+                }
+            }
+            long now = System.nanoTime();
             // when minimum error is reached, training is done
             if (E < minE) {
-                break;
+                reason = StopReason.MIN_ERROR;
+            } else if (Double.isNaN(E) || Double.isInfinite(E)) {
+                reason = StopReason.DIVERGED;
+            } else if (validation != null && sinceBest >= patience) {
+                reason = StopReason.EARLY_STOPPING;
+            } else if (maxEpochs > 0 && epoch >= maxEpochs) {
+                reason = StopReason.MAX_EPOCHS;
+            } else if (budget > 0 && now - start >= budget) {
+                reason = StopReason.TIME_BUDGET;
+            } else if (listener != null && now - lastProgress >= interval) {
+                lastProgress = now;
+                listener.progress(new TrainingProgress(epoch, E,
+                        validationE, millis(start), null));
             }
         }
-        trained = true;
+        metrics.endTraining(net, workspaces);
+        if (reason != StopReason.CANCELLED) {
+            if (best != null && bestE < Double.POSITIVE_INFINITY) {
+                best.copyTo(net);
+            }
+            setModel(new TrainedModel(net.copy().withActivation(
+                    inferenceActivation), M));
+        }
+        return finished(new TrainingProgress(epoch, E, validationE,
+                millis(start), reason));
+    }
+
+    private TrainingProgress failed(long start) {
+        return new TrainingProgress(0, Double.NaN, Double.NaN,
+                millis(start), StopReason.FAILED);
     }
 
-    private boolean isLastSample(int sampleIndex) {
-        return sampleIndex == samplesX.size() - 1;
+    private TrainingProgress finished(TrainingProgress progress) {
+        TrainingListener listener = this.listener;
+        if (listener != null) {
+            listener.finished(progress);
+        }
+        return progress;
     }
 
-    private boolean batchFull(int sampleIndex) {
-        return (sampleIndex + 1) % batchSize == 0;
+    private static long millis(long start) {
+        return (System.nanoTime() - start) / 1000000L;
     }
 
-    private void addAccumulatedError() {
-        for (int k = 0; k < layers.length - 1; k++) {
-            for (Neuron n : layers[k]) {
-                for (int j = 0; j < n.e.length; j++) {
-                    n.w[j] += n.e[j];
-                    n.e[j] = 0;
-                }
-            }
+    // moves a random part of loaded samples to the validation samples
+    private Dataset splitValidation(Random random) {
+        int rows = samples.rows;
+        int[] order = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        for (int i = rows - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
         }
+        int validationRows = Math.min(rows - 1,
+                Math.max(1, (int) Math.round(rows * validationFraction)));
+        Dataset validation = samples.select(Arrays.copyOfRange(order, 0,
+                validationRows));
+        samples = samples.select(Arrays.copyOfRange(order, validationRows,
+                rows));
+        return validation;
     }
 
-    private void correctOrAccumulateWeights(int algorithmVersion) {
-        for (int k = 0; k < layers.length - 1; k++) {
-            for (Neuron n : layers[k]) {
-                for (int j = 0; j < n.w.length; j++) {
-                    double error = layers[k + 1].neurons[j].error;
-                    if (algorithmVersion == SB) {
-                        // correct weights if algorithm is stohastic
-                        // backpropagation
-                        n.w[j] += lr * n.y * error;
-                    } else {
-                        n.e[j] += lr * n.y * error;
-                    }
-                }
+    // mean error of the current weights on the given samples
+    private double validationError(Dataset validation) {
+        double sumE = 0;
+        for (int r = 0; r < validation.rows; r++) {
+            net.forward(ws, validation.x, validation.inputOffset(r));
+            sumE += net.error(ws, validation.t, validation.outputOffset(r));
+        }
+        return E(sumE, validation.rows);
+    }
+
+    // returns false and reports the training as failed if the algorithm
+    // doesn't exist
+    private boolean knownAlgorithm(int algVer) {
+        if (algVer < B || algVer > ASB) {
+            System.out.println("Unknown training algorithm " + algVer
+                    + ".\nNetwork training failed.");
+            return false;
+        }
+        return true;
+    }
+
+    // parses parameters and initializes the network, returns false if the
+    // network can't be initialized
+    boolean initialize(String m, String architecture,
+            String learningRate, String minError) {
+        // parsing parameters
+        try {
+            M = Integer.parseInt(m.trim());
+            lr = Double.parseDouble(learningRate);
+            minE = Double.parseDouble(minError);
+        } catch (NumberFormatException e) {
+            System.out.println("M, learning rate and minimum error should"
+                    + " be numbers.\nNetwork training failed during network"
+                    + " initialization.");
+            return false;
+        }
+
+        try {
+            initializeNN(architecture);
+        } catch (NeuralNetworkException e1) {
+            System.out
+                    .println(e1.getMessage()
+                            + "\nNetwork training failed during network initialization.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets transfer functions of neurons, each of them may be exact or a
+     * faster approximation of the sigmoid. Takes effect on the next training.
+     * 
+     * @param training
+     *            Transfer function used while training
+     * @param inference
+     *            Transfer function of the trained model
+     */
+    public void setActivations(Activation training, Activation inference) {
+        trainingActivation = training;
+        inferenceActivation = inference;
+    }
+
+    /**
+     * Limits the training, limits are checked after every epoch. Takes
+     * effect on the next training.
+     * 
+     * @param maxEpochs
+     *            Maximum number of epochs, 0 for no limit
+     * @param timeBudgetMillis
+     *            Time after which no new epoch is started, 0 for no limit
+     */
+    public void setLimits(int maxEpochs, long timeBudgetMillis) {
+        this.maxEpochs = maxEpochs;
+        this.timeBudget = timeBudgetMillis;
+    }
+
+    /**
+     * Enables early stopping. A random part of the samples is kept aside
+     * for validation and training stops once the validation error hasn't
+     * improved for the given number of epochs. The model then gets the
+     * weights with the lowest validation error. Takes effect on the next
+     * training.
+     * 
+     * @param validationFraction
+     *            Part of the samples used for validation, 0 disables early
+     *            stopping
+     * @param patience
+     *            Number of epochs without improvement before training stops
+     */
+    public void setEarlyStopping(double validationFraction, int patience) {
+        if (validationFraction < 0 || validationFraction >= 1) {
+            throw new IllegalArgumentException(
+                    "Validation fraction should be at least 0 and less than 1.");
+        }
+        this.validationFraction = validationFraction;
+        this.patience = patience;
+    }
+
+    /**
+     * Sets the listener notified about the progress of trainings.
+     * 
+     * @param listener
+     *            Listener or null for none
+     * @param intervalMillis
+     *            Minimum time between two progress notifications
+     */
+    public void setProgressListener(TrainingListener listener,
+            long intervalMillis) {
+        this.listener = listener;
+        this.progressInterval = intervalMillis;
+    }
+
+    /**
+     * Sets the seed of trainings. Initial weights, the validation split and
+     * the order of samples all come from the seed, so trainings with the
+     * same seed, parameters, samples and number of workers give bit
+     * identical weights. The only exception is asynchronous stohastic
+     * backpropagation with more than one worker, whose workers race by
+     * design.
+     * 
+     * @param seed
+     *            Seed of the next trainings or null for a new random seed
+     *            every training
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return Seed of the last training, passing it to
+     *         {@link #setSeed(Long)} repeats the training
+     */
+    public long getLastSeed() {
+        return lastSeed;
+    }
+
+    /**
+     * Sets the scheme of initial weights, {@link WeightInitialization#AUTO}
+     * by default.
+     * 
+     * @param initialization
+     *            Scheme of initial weights
+     */
+    public void setInitialization(WeightInitialization initialization) {
+        this.initialization = initialization;
+    }
+
+    /**
+     * Sets whether stohastic and mini-batch backpropagation visit samples in
+     * a new random order every epoch, they do by default. Batch
+     * backpropagation always visits them in file order since the order
+     * doesn't change its corrections.
+     * 
+     * @param shuffle
+     *            If samples are shuffled every epoch
+     */
+    public void setShuffle(boolean shuffle) {
+        this.shuffle = shuffle;
+    }
+
+    /**
+     * Sets how fine-tuning updates the model.
+     * 
+     * @param steps
+     *            Number of weight updates of every fine-tuning
+     * @param batchSize
+     *            Number of samples per update
+     * @param learningRate
+     *            Learning rate of plain gradient descent used by fine-tuning
+     */
+    public void setFineTuning(int steps, int batchSize, double learningRate) {
+        if (steps < 1 || batchSize < 1) {
+            throw new IllegalArgumentException(
+                    "Fine-tuning needs at least one step of one sample.");
+        }
+        fineTuneSteps = steps;
+        fineTuneBatchSize = batchSize;
+        fineTuneRate = learningRate;
+    }
+
+    /**
+     * Enables the replay buffer of fine-tuning. The buffer keeps a random
+     * sample of training samples and of samples of earlier fine-tunings,
+     * mixing them into fine-tuning batches keeps the network from
+     * forgetting the old samples. Takes effect on the next training.
+     * 
+     * @param capacity
+     *            Number of samples kept, 0 disables replay
+     * @param ratio
+     *            Part of every fine-tuning batch taken from the buffer,
+     *            between 0 and 1, at least one sample of every batch is
+     *            always new
+     */
+    public void setReplay(int capacity, double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException(
+                    "Replay ratio should be between 0 and 1.");
+        }
+        replayCapacity = capacity;
+        replayRatio = ratio;
+    }
+
+    /**
+     * Caches recognitions of {@link #infer(double[], double[])}, so
+     * repeated and nearly identical gestures skip the network. The cache is
+     * cleared whenever the model changes. Batch inference is not cached.
+     * 
+     * @param capacity
+     *            Number of cached recognitions, 0 disables the cache
+     * @param granularity
+     *            Representation values are rounded to its multiples before
+     *            gestures are compared
+     */
+    public void setRecognitionCache(int capacity, double granularity) {
+        RecognitionCache old = cache;
+        if (capacity == 0) {
+            cache = null;
+            if (old != null) {
+                old.unregister();
             }
+            return;
         }
+        RecognitionCache created = new RecognitionCache(capacity,
+                granularity);
+        created.register();
+        cache = created;
+    }
+
+    /**
+     * @return Cache of recognitions or null if caching is disabled
+     */
+    public RecognitionCache getRecognitionCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the optimizer and the learning rate schedule used by all training
+     * algorithms. Adaptive optimizers usually need a lower learning rate than
+     * plain gradient descent. Takes effect on the next training, the
+     * optimizer's state is reset then.
+     * 
+     * @param optimizer
+     *            Optimizer turning corrections into weight updates
+     * @param schedule
+     *            Learning rate of every epoch
+     */
+    public void setOptimizer(Optimizer optimizer,
+            LearningRateSchedule schedule) {
+        this.optimizer = optimizer;
+        this.schedule = schedule;
     }
 
-    private double E(double[] errors) {
-        double E = 0;
-        for (double e : errors) {
-            E += e;
+    /**
+     * Sets the number of workers used to train batch, mini-batch and
+     * asynchronous stohastic backpropagation. Stohastic backpropagation
+     * always trains serially, so does the asynchronous one with a single
+     * worker.
+     * 
+     * @param pool
+     *            Pool running the workers
+     * @param workers
+     *            Number of workers a batch is split to, weights trained by
+     *            batch and mini-batch backpropagation depend only on the
+     *            samples and this number
+     */
+    public synchronized void setParallelism(ForkJoinPool pool,
+            int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException(
+                    "Number of workers should be at least 1.");
         }
-        return E / (2 * errors.length);
+        this.pool = pool;
+        this.workers = workers;
     }
 
-    // weighted error of neurons to which neuron n sends its output
-    private double weightedError(Neuron n) {
-        int k = n.k;
-        double sum = 0;
-        for (int j = 0; j < layers[k + 1].size; j++) {
-            double e = layers[k + 1].neurons[j].error;
-            sum += e * n.w[j];
+    /**
+     * Sets the number of workers used to train batch, mini-batch and
+     * asynchronous stohastic backpropagation, workers run in a new pool of
+     * the same parallelism. The previous pool of the network is shut down
+     * once no training uses it.
+     * 
+     * @param workers
+     *            Number of workers
+     */
+    public synchronized void setParallelism(int workers) {
+        if (workers == this.workers && pool == ownPool) {
+            return;
         }
-        return sum;
+        if (ownPool != null) {
+            if (poolUsers > 0) {
+                retiredPools.add(ownPool);
+            } else {
+                ownPool.shutdown();
+            }
+        }
+        ownPool = workers > 1 ? new ForkJoinPool(workers) : null;
+        setParallelism(ownPool, workers);
+    }
+
+    // marks a training that may run on the pool
+    private synchronized void usePool() {
+        poolUsers++;
     }
 
-    private double[] forwardPassNN(double[] input) {
-        int k = 0;
-        // forward pass input layer
-        Layer inputLayer = layers[k];
-        for (Neuron n : inputLayer) {
-            n.y = input[n.i];
+    // shuts down pools replaced during trainings once none is running
+    private synchronized void releasePool() {
+        if (--poolUsers == 0) {
+            for (ForkJoinPool retired : retiredPools) {
+                retired.shutdown();
+            }
+            retiredPools.clear();
         }
-        for (k = 1; k < layers.length; k++) {
-            forwardPassLayer(k);
+    }
+
+    // creates trainers of the algorithm for the current network
+    void prepareTrainers(int algVer) {
+        parallelTrainer = null;
+        asyncTrainer = null;
+        if (workers > 1 && (algVer == B || algVer == MBB)) {
+            parallelTrainer = new ParallelTrainer(net, pool, workers);
+        } else if (workers > 1 && algVer == ASB) {
+            asyncTrainer = new AsyncTrainer(net, pool, workers);
         }
-        Layer outputLayer = layers[k - 1];
-        return outputLayer.output();
     }
 
-    // pass k-th layer
-    private void forwardPassLayer(int k) {
-        for (Neuron n : layers[k]) {
-            double net = net(n);
-            n.y = Neuron.sigm(net);
+    // trains one epoch over loaded samples, returns mean error
+    double epoch(int algVer) {
+        double rate = nextRate();
+        prepareOrder(algVer);
+        double sumE;
+        if (parallelTrainer != null) {
+            sumE = parallelEpoch(algVer, rate);
+        } else if (asyncTrainer != null) {
+            sumE = asyncTrainer.epoch(samples, order, rate);
+        } else {
+            sumE = serialEpoch(algVer, rate);
         }
+        return E(sumE, samples.rows);
     }
 
-    // net
-    private double net(Neuron n) {
-        double net = 0;
-        Neuron[] neurons = layers[n.k - 1].neurons;
-        for (Neuron neuron : neurons) {
-            net += neuron.y * neuron.w[n.i];
+    // sets the order of samples of the next epoch
+    private void prepareOrder(int algVer) {
+        if (order == null || order.length != samples.rows) {
+            order = new int[samples.rows];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+        }
+        if (shuffle && algVer != B) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = shuffleRandom.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
         }
-        return net;
+    }
+
+    // learning rate of the next epoch
+    private double nextRate() {
+        return schedule.rate(lr, epochs++);
+    }
+
+    private double parallelEpoch(int algVer, double rate) {
+        return parallelTrainer.epoch(samples, order, algVer == B
+                ? samples.rows : batchSize, rate);
+    }
+
+    private double serialEpoch(int algVer, double rate) {
+        // batch backpropagation applies corrections once per epoch
+        return net.train(ws, samples, order, 0, samples.rows, 0, rate,
+                algVer == SB || algVer == ASB, algVer == B ? samples.rows
+                        : batchSize);
+    }
+
+    private double E(double sumE, int samples) {
+        return net.meanError(sumE, samples);
     }
 
     /**
@@ -210,50 +1016,48 @@ public class NeuralNetwork {
      * 
      * @param architecture
      *            Defines network's architecture k1xk2x...xkn, k1 is size of the
-     *            input layer, kn is size of the output layer.
+     *            input layer, kn is size of the output layer. Every layer
+     *            after the input layer may be followed by its transfer
+     *            function sigmoid, tanh, relu, leakyrelu or, for the output
+     *            layer, softmax, e.g. 20x64relu x32relu x5softmax. Layers
+     *            without one use the sigmoid. Networks with the softmax
+     *            output layer minimize the cross-entropy, others the squared
+     *            error.
      * @throws NeuralNetworkException
-     *             If input layer's size is not 2*M where M is the number of
-     *             points in the gesture representation.
+     *             If the architecture is not valid or input layer's size is
+     *             not 2*M where M is the number of points in the gesture
+     *             representation.
      */
     private void initializeNN(String architecture)
             throws NeuralNetworkException {
-        String[] arch = architecture.split("x");
-
-        // creating layers of neural network
-        layers = new Layer[arch.length];
-        for (int layerIndex = 0; layerIndex < arch.length; layerIndex++) {
-            int layerSize = Integer.parseInt(arch[layerIndex]);
-            if (layerIndex == 0) {
-                if (layerSize != 2 * M) {
-                    throw new NeuralNetworkException(
-                            "Size of the input layer should be 2*M.");
-                }
-            }
-            layers[layerIndex] = new Layer(layerSize);
-        }
-
-        Random random = new Random();
-        // go through layers
-        for (int k = 0; k < layers.length; k++) {
-            // for layer create neurons
-            for (int j = 0; j < layers[k].size; j++) {
-                Neuron neuron = new Neuron();
-                neuron.k = k;
-                neuron.i = j;
-                // output layer doesn't have weights
-                if (k < layers.length - 1) {
-                    double[] w = new double[layers[k + 1].size];
-                    double[] e = new double[layers[k + 1].size];
-                    for (int i = 0; i < w.length; i++) {
-                        w[i] = random.nextDouble();
-                        e[i] = 0;
-                    }
-                    neuron.e = e;
-                    neuron.w = w;
-                }
-                layers[k].neurons[j] = neuron;
-            }
+        Architecture arch = Architecture.parse(architecture,
+                trainingActivation);
+        if (arch.sizes[0] != 2 * M) {
+            throw new NeuralNetworkException(
+                    "Size of the input layer should be 2*M.");
         }
+
+        lastSeed = seed != null ? seed : new Random().nextLong();
+        Random random = new Random(lastSeed);
+        net = new FlatNetwork(arch);
+        net.initialize(initialization, new Random(random.nextLong()));
+        shuffleRandom = new Random(random.nextLong());
+        validationRandom = new Random(random.nextLong());
+        order = null;
+        net.setOptimizer(optimizer);
+        ws = net.newWorkspace();
+        epochs = 0;
+    }
+
+    /**
+     * Creates the object view of the network. Meant for debugging, the
+     * returned layers are copies of the current state.
+     * 
+     * @return Layers of the network or null if the network is not
+     *         initialized
+     */
+    public Layer[] getLayers() {
+        return net == null ? null : net.toLayers(ws);
     }
 
     /**
@@ -268,33 +1072,171 @@ public class NeuralNetwork {
      */
     public String infer(ArrayList<DecimalPoint> g)
             throws NeuralNetworkException {
-        if (!trained) {
+        TrainedModel trainedModel = trainedModel();
+        double[] x = toInput(g);
+
+        double[] result = new double[trainedModel.outputSize()];
+        int maxIndex = infer(x, result);
+
+        // debug
+        System.out.print("alpha beta gamma delta epsilon:");
+        for (double r : result) {
+            System.out.print(r + " ");
+        }
+        System.out.println();
+
+        return label(maxIndex);
+    }
+
+    /**
+     * Recognizes gesture given as network input without allocating. Works
+     * properly only when {@link NeuralNetwork#trained} is set to true.
+     * 
+     * @param x
+     *            Gesture representation x1 y1 x2 y2 ... of length 2*M
+     * @param output
+     *            Array of output layer's size that receives the network's
+     *            output, may be null
+     * @return Index of the recognized gesture, 0 for alpha to 4 for epsilon
+     * @throws NeuralNetworkException
+     *             If the network is not trained
+     */
+    public int infer(double[] x, double[] output)
+            throws NeuralNetworkException {
+        TrainedModel trainedModel = trainedModel();
+        if (!metrics.isEnabled()) {
+            return infer(trainedModel, x, output);
+        }
+        long start = System.nanoTime();
+        int maxIndex = infer(trainedModel, x, output);
+        metrics.recordInference(System.nanoTime() - start);
+        return maxIndex;
+    }
+
+    private int infer(TrainedModel trainedModel, double[] x, double[] output) {
+        RecognitionCache cache = this.cache;
+        if (cache == null) {
+            return trainedModel.infer(x, output);
+        }
+        int maxIndex = cache.get(trainedModel, x, output);
+        if (maxIndex < 0) {
+            double[] result = output != null ? output
+                    : new double[trainedModel.outputSize()];
+            maxIndex = trainedModel.infer(x, result);
+            cache.put(trainedModel, x, maxIndex, result);
+        }
+        return maxIndex;
+    }
+
+    /**
+     * Recognizes a batch of gestures. Works properly only when
+     * {@link NeuralNetwork#trained} is set to true.
+     * 
+     * @param inputs
+     *            Gesture representations x1 y1 x2 y2 ..., 2*M values per row
+     * @param rows
+     *            Number of gestures
+     * @param classes
+     *            Receives index of the recognized gesture for every row, 0
+     *            for alpha to 4 for epsilon
+     * @param probabilities
+     *            Receives probabilities of the gestures, row after row, may
+     *            be null. Sigmoid outputs are divided by their sum, outputs
+     *            of tanh and relu layers go through the softmax.
+     * @throws NeuralNetworkException
+     *             If the network is not trained
+     */
+    public void inferBatch(double[] inputs, int rows, int[] classes,
+            double[] probabilities) throws NeuralNetworkException {
+        TrainedModel trainedModel = trainedModel();
+        if (!metrics.isEnabled()) {
+            trainedModel.inferBatch(inputs, rows, classes, probabilities);
+            return;
+        }
+        long start = System.nanoTime();
+        trainedModel.inferBatch(inputs, rows, classes, probabilities);
+        metrics.recordBatchInference(System.nanoTime() - start);
+    }
+
+    /**
+     * Recognizes a batch of gestures, see
+     * {@link #inferBatch(double[], int, int[], double[])}.
+     * 
+     * @param inputs
+     *            Gesture representations, one per row
+     * @param classes
+     *            Receives index of the recognized gesture for every row
+     * @param probabilities
+     *            Receives probabilities of the gestures, may be null
+     * @throws NeuralNetworkException
+     *             If the network is not trained
+     */
+    public void inferBatch(double[][] inputs, int[] classes,
+            double[] probabilities) throws NeuralNetworkException {
+        int n = trainedModel().inputSize();
+        double[] flat = new double[inputs.length * n];
+        for (int r = 0; r < inputs.length; r++) {
+            System.arraycopy(inputs[r], 0, flat, r * n, n);
+        }
+        inferBatch(flat, inputs.length, classes, probabilities);
+    }
+
+    static void classify(FlatNetwork net, double[] result, int rows,
+            int[] classes, double[] probabilities) {
+        int outputs = net.outputSize();
+        for (int r = 0, offset = 0; r < rows; r++, offset += outputs) {
+            int maxIndex = 0;
+            for (int i = 0; i < outputs; i++) {
+                if (result[offset + i] > result[offset + maxIndex]) {
+                    maxIndex = i;
+                }
+            }
+            classes[r] = maxIndex;
+            if (probabilities != null) {
+                net.probabilities(result, offset, probabilities, offset);
+            }
+        }
+    }
+
+    private TrainedModel trainedModel() throws NeuralNetworkException {
+        TrainedModel trainedModel = model.get();
+        if (trainedModel == null) {
             throw new NeuralNetworkException(
                     "Cannot infer, network is not trained.");
         }
+        return trainedModel;
+    }
 
+    /**
+     * @param g
+     *            Gesture representation
+     * @return Network input x1 y1 x2 y2 ... of the representation
+     */
+    public static double[] toInput(ArrayList<DecimalPoint> g) {
         double[] x = new double[g.size() * 2];
-
         for (int i = 0; i < g.size(); i++) {
             x[2 * i] = g.get(i).x;
             x[2 * i + 1] = g.get(i).y;
         }
+        return x;
+    }
 
-        double[] result = forwardPassNN(x);
-        int maxIndex = 0;
-        for (int i = 0; i < result.length; i++) {
-            if (result[i] > result[maxIndex]) {
-                maxIndex = i;
+    /**
+     * @param label
+     *            Name of the gesture
+     * @return Index of the gesture, 0 for alpha to 4 for epsilon, -1 for
+     *         unknown names
+     */
+    public static int labelIndex(String label) {
+        for (int i = 0; i < 5; i++) {
+            if (label(i).equals(label)) {
+                return i;
             }
         }
+        return -1;
+    }
 
-        // debug
-        System.out.print("alpha beta gamma delta epsilon:");
-        for (double r : result) {
-            System.out.print(r + " ");
-        }
-        System.out.println();
-
+    static String label(int maxIndex) {
         if (maxIndex == 0) {
             return alpha;
         }
@@ -313,30 +1255,7 @@ public class NeuralNetwork {
         return epsilon;
     }
 
-    private void loadSamples(String file) {
-        try {
-            samplesX = new ArrayList<double[]>();
-            samplesT = new ArrayList<double[]>();
-            Scanner sc = new Scanner(new File(file));
-            while (sc.hasNextLine()) {
-                double[] x = new double[2 * M];
-
-                for (int i = 0; i < M; i++) {
-                    x[2 * i] = sc.nextDouble();
-                    x[2 * i + 1] = sc.nextDouble();
-                }
-                samplesX.add(x);
-                int outputLayerSize = layers[layers.length - 1].size;
-                double[] y = new double[outputLayerSize];
-                for (int i = 0; i < outputLayerSize; i++) {
-                    y[i] = sc.nextInt();
-                }
-                samplesT.add(y);
-
-            }
-            sc.close();
-        } catch (FileNotFoundException e) {
-            System.out.println("Can't find file " + file);
-        }
+    void loadSamples(String file) throws NeuralNetworkException {
+        samples = SampleLoader.load(file, 2 * M, net.outputSize());
     }
 }
@@ -13,9 +13,12 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Path2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -25,7 +28,9 @@ import javax.swing.JTextArea;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
+import neural_network.gesture.DecimalPoint;
 import neural_network.gesture.GestureProcessor;
+import neural_network.gesture.StrokeFeaturizer;
 
 @SuppressWarnings("serial")
 public class NeuralNetworkUI extends JFrame {
@@ -36,10 +41,21 @@ public class NeuralNetworkUI extends JFrame {
     public static final String epsilon = "epsilon";
     public static final String samplesFile = System.getProperty("user.dir")
             + "/samples.txt";
+    public static final String modelFile = System.getProperty("user.dir")
+            + "/model.bin";
+
+    // maximum number of drawn gestures waiting for fine-tuning
+    private static final int MAX_NEW_SAMPLES = 1000;
 
     private NeuralNetwork nn = NeuralNetwork.getInstance();
     private GestureProcessor gp = new GestureProcessor();
     private Canvas canvas;
+    // training started from the UI
+    private TrainingJob job;
+    // gestures drawn in the add sample mode with the selected gesture as
+    // label, used to fine-tune the network
+    private final ArrayList<double[]> newInputs = new ArrayList<double[]>();
+    private final ArrayList<Integer> newLabels = new ArrayList<Integer>();
 
     JButton buttonAlpha;
     JButton buttonBeta;
@@ -50,6 +66,64 @@ public class NeuralNetworkUI extends JFrame {
     public NeuralNetworkUI() {
         setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
         initGUIandActions();
+        loadModel();
+    }
+
+    // uses the model trained in one of the previous runs if there is one
+    private void loadModel() {
+        if (!new File(modelFile).exists()) {
+            return;
+        }
+        try {
+            nn.setModel(ModelIO.load(modelFile));
+        } catch (IOException | NeuralNetworkException e) {
+            System.out.println("Can't load model " + modelFile + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private void saveModel() {
+        TrainedModel model = nn.getModel();
+        if (model == null) {
+            return;
+        }
+        try {
+            ModelIO.save(model, modelFile);
+        } catch (IOException e) {
+            System.out.println("Can't save model " + modelFile + ": "
+                    + e.getMessage());
+        }
+    }
+
+    // keeps a drawn gesture for the next fine-tuning
+    private void addSample(ArrayList<DecimalPoint> representation,
+            String gesture) {
+        if (newInputs.size() >= MAX_NEW_SAMPLES) {
+            System.out.println("Learn drawn gestures first, at most "
+                    + MAX_NEW_SAMPLES + " are kept.");
+            return;
+        }
+        newInputs.add(NeuralNetwork.toInput(representation));
+        newLabels.add(NeuralNetwork.labelIndex(gesture));
+    }
+
+    // fine-tunes the network with gestures drawn since the last fine-tuning
+    private void fineTune() {
+        if (newInputs.isEmpty()) {
+            return;
+        }
+        double[][] inputs = newInputs.toArray(new double[newInputs.size()][]);
+        int[] labels = new int[newLabels.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = newLabels.get(i);
+        }
+        try {
+            job = nn.fineTune(inputs, labels);
+            newInputs.clear();
+            newLabels.clear();
+        } catch (NeuralNetworkException | IllegalStateException e) {
+            System.out.println("Can't fine-tune: " + e.getMessage());
+        }
     }
 
     private void initGUIandActions() {
@@ -112,13 +186,23 @@ public class NeuralNetworkUI extends JFrame {
             }
         });
 
-        JPanel panelButtons = new JPanel(new GridLayout(0, 6));
+        final JButton buttonLearn = new JButton("Learn drawn gestures");
+        buttonLearn.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                fineTune();
+            }
+        });
+
+        JPanel panelButtons = new JPanel(new GridLayout(0, 7));
         panelButtons.add(buttonAlpha);
         panelButtons.add(buttonBeta);
         panelButtons.add(buttonGamma);
         panelButtons.add(buttonDelta);
         panelButtons.add(buttonEpsilon);
         panelButtons.add(buttonDone);
+        panelButtons.add(buttonLearn);
         getContentPane().add(panelButtons, BorderLayout.SOUTH);
 
         JLabel labelFile = new JLabel("File with samples");
@@ -130,23 +214,156 @@ public class NeuralNetworkUI extends JFrame {
         JTextArea textAreaArchitecture = new JTextArea("20x5x3x5");
         JLabel labelLearningRate = new JLabel("Learning rate");
         JTextArea textAreaLearningRate = new JTextArea("0.01");
+        JLabel labelWorkers = new JLabel("Number of training threads");
+        JTextArea textAreaWorkers = new JTextArea("1");
         JComboBox<String> cbAlgorithm = new JComboBox<String>();
         JLabel labelMinError = new JLabel("Minimum error");
         JTextArea textAreaMinError = new JTextArea("0.02");
         cbAlgorithm.addItem("Backpropagation");
         cbAlgorithm.addItem("Stohastic Backpropagation");
         cbAlgorithm.addItem("Mini-batch Backpropagation");
-        JButton buttonTrain = new JButton("Train network");
+        cbAlgorithm.addItem("Asynchronous Stohastic Backpropagation");
+        JLabel labelMaxEpochs = new JLabel(
+                "Maximum number of epochs (0 for no limit)");
+        JTextArea textAreaMaxEpochs = new JTextArea("100000");
+        JLabel labelTimeBudget = new JLabel(
+                "Time budget in seconds (0 for no limit)");
+        JTextArea textAreaTimeBudget = new JTextArea("300");
+        JLabel labelSeed = new JLabel("Seed (empty for a random seed)");
+        JTextArea textAreaSeed = new JTextArea("");
+        final JLabel labelProgress = new JLabel(" ");
+        final JButton buttonTrain = new JButton("Train network");
+        final JButton buttonCancel = new JButton("Cancel training");
+        buttonCancel.setEnabled(false);
+        final JCheckBox checkBoxEarly = new JCheckBox(
+                "Recognize while drawing");
+        final JCheckBox checkBoxRecord = new JCheckBox(
+                "Add next drawing as sample of the selected gesture");
+        final JLabel labelPrediction = new JLabel(" ");
+
+        canvas.getRecognizer().setListener(new RecognitionListener() {
+
+            @Override
+            public void prediction(final Recognition recognition) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (canvas.isDrawing()) {
+                            labelPrediction.setText(recognition.toString());
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void decided(final Recognition recognition) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (canvas.isDrawing()) {
+                            labelPrediction.setText("Decided: "
+                                    + recognition);
+                            canvas.showResult(recognition.getLabel());
+                        }
+                    }
+                });
+            }
+        });
+
+        checkBoxEarly.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                canvas.setEarlyRecognition(checkBoxEarly.isSelected());
+                labelPrediction.setText(" ");
+            }
+        });
+
+        checkBoxRecord.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                canvas.setRecording(checkBoxRecord.isSelected());
+            }
+        });
+
+        nn.setProgressListener(new TrainingListener() {
+
+            @Override
+            public void progress(final TrainingProgress progress) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        labelProgress.setText(progress.toString());
+                    }
+                });
+            }
+
+            @Override
+            public void finished(final TrainingProgress progress) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        labelProgress.setText(progress + ", seed "
+                                + nn.getLastSeed());
+                        buttonTrain.setEnabled(true);
+                        buttonCancel.setEnabled(false);
+                        saveModel();
+                    }
+                });
+            }
+        }, 250);
 
         buttonTrain.addActionListener(new ActionListener() {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                nn.train(textAreaFile.getText(), textAreaM.getText(),
-                        textAreaArchitecture.getText(),
-                        textAreaLearningRate.getText(),
-                        textAreaMinError.getText(),
-                        cbAlgorithm.getSelectedIndex());
+                try {
+                    nn.setParallelism(Integer.parseInt(textAreaWorkers
+                            .getText().trim()));
+                    nn.setLimits(Integer.parseInt(textAreaMaxEpochs.getText()
+                            .trim()), 1000 * Long.parseLong(textAreaTimeBudget
+                            .getText().trim()));
+                    String seed = textAreaSeed.getText().trim();
+                    nn.setSeed(seed.isEmpty() ? null : Long.valueOf(seed));
+                } catch (NumberFormatException e1) {
+                    labelProgress.setText("Number of training threads, "
+                            + "maximum number of epochs, time budget and "
+                            + "seed should be whole numbers.");
+                    return;
+                } catch (IllegalArgumentException e1) {
+                    labelProgress.setText(e1.getMessage());
+                    return;
+                }
+                buttonTrain.setEnabled(false);
+                buttonCancel.setEnabled(true);
+                labelProgress.setText("Training...");
+                try {
+                    job = nn.trainAsync(textAreaFile.getText(),
+                            textAreaM.getText(),
+                            textAreaArchitecture.getText(),
+                            textAreaLearningRate.getText(),
+                            textAreaMinError.getText(),
+                            cbAlgorithm.getSelectedIndex());
+                } catch (IllegalStateException e1) {
+                    labelProgress.setText(e1.getMessage());
+                    buttonTrain.setEnabled(true);
+                    buttonCancel.setEnabled(false);
+                }
+            }
+        });
+
+        buttonCancel.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (job != null) {
+                    job.cancel();
+                }
             }
         });
 
@@ -161,8 +378,21 @@ public class NeuralNetworkUI extends JFrame {
         panelAlgorithmParameters.add(textAreaLearningRate);
         panelAlgorithmParameters.add(labelMinError);
         panelAlgorithmParameters.add(textAreaMinError);
+        panelAlgorithmParameters.add(labelWorkers);
+        panelAlgorithmParameters.add(textAreaWorkers);
+        panelAlgorithmParameters.add(labelMaxEpochs);
+        panelAlgorithmParameters.add(textAreaMaxEpochs);
+        panelAlgorithmParameters.add(labelTimeBudget);
+        panelAlgorithmParameters.add(textAreaTimeBudget);
+        panelAlgorithmParameters.add(labelSeed);
+        panelAlgorithmParameters.add(textAreaSeed);
         panelAlgorithmParameters.add(cbAlgorithm);
         panelAlgorithmParameters.add(buttonTrain);
+        panelAlgorithmParameters.add(buttonCancel);
+        panelAlgorithmParameters.add(labelProgress);
+        panelAlgorithmParameters.add(checkBoxEarly);
+        panelAlgorithmParameters.add(labelPrediction);
+        panelAlgorithmParameters.add(checkBoxRecord);
         getContentPane().add(panelAlgorithmParameters, BorderLayout.LINE_END);
     }
 
@@ -181,13 +411,25 @@ public class NeuralNetworkUI extends JFrame {
         private Point stop;
         private Shape shape;
         private ArrayList<Point> g;
+        // representation of the stroke computed while it is drawn
+        private StrokeFeaturizer stroke;
+        // recognizes the stroke while it is drawn if early recognition is
+        // on
+        private EarlyRecognizer recognizer;
+        private boolean early;
+        private boolean drawing;
         private String gestureId;
+        // is the next drawing of a trained network added as sample of the
+        // selected gesture
+        private boolean recording;
         NeuralNetwork nn;
         GestureProcessor gp;
 
         public Canvas(NeuralNetwork nn, GestureProcessor gp) {
             this.nn = nn;
             this.gp = gp;
+            stroke = gp.newFeaturizer();
+            recognizer = new EarlyRecognizer(nn, stroke);
             addListeners();
         }
 
@@ -195,12 +437,36 @@ public class NeuralNetworkUI extends JFrame {
             this.gestureId = gestureId;
         }
 
+        public void setRecording(boolean recording) {
+            this.recording = recording;
+        }
+
+        public void setEarlyRecognition(boolean early) {
+            this.early = early;
+        }
+
+        public EarlyRecognizer getRecognizer() {
+            return recognizer;
+        }
+
+        // is a stroke being drawn, recognitions that arrive after the
+        // stroke ended are ignored
+        public boolean isDrawing() {
+            return drawing;
+        }
+
         private void addListeners() {
             addMouseListener(new MouseAdapter() {
                 public void mousePressed(MouseEvent event) {
                     start = event.getPoint();
                     g = new ArrayList<Point>();
                     g.add(start);
+                    stroke.reset();
+                    stroke.add(start.x, start.y);
+                    drawing = true;
+                    if (early) {
+                        recognizer.begin();
+                    }
                     Path2D path = new Path2D.Double();
                     shape = path;
                 }
@@ -212,11 +478,21 @@ public class NeuralNetworkUI extends JFrame {
                     } catch (Exception ingore) {
                     }
                     shape = path;
+                    drawing = false;
+                    recognizer.end();
 
                     if (nn.trained) {
                         try {
-                            String gesture = nn.infer(gp.getRepresentation(g));
+                            ArrayList<DecimalPoint> representation = gp
+                                    .getRepresentation(stroke);
+                            String gesture = nn.infer(representation);
                             showResult(gesture);
+                            // in the add sample mode the selected gesture
+                            // labels only the next drawing for fine-tuning
+                            if (recording && gestureId != null) {
+                                addSample(representation, gestureId);
+                                gestureId = null;
+                            }
                         } catch (NeuralNetworkException e) {
                             JOptionPane
                                     .showInputDialog("Train the network first by clicking 'Train network' button.");
@@ -226,40 +502,16 @@ public class NeuralNetworkUI extends JFrame {
                     }
                     repaint();
                 }
-
-                private void showResult(String result) {
-                    buttonAlpha.setForeground(Color.black);
-                    buttonBeta.setForeground(Color.black);
-                    buttonGamma.setForeground(Color.black);
-                    buttonDelta.setForeground(Color.black);
-                    buttonEpsilon.setForeground(Color.black);
-
-                    switch (result) {
-                    case alpha:
-                        buttonAlpha.setForeground(Color.magenta);
-                        break;
-                    case beta:
-                        buttonBeta.setForeground(Color.magenta);
-                        break;
-                    case gamma:
-                        buttonGamma.setForeground(Color.magenta);
-                        break;
-                    case delta:
-                        buttonDelta.setForeground(Color.magenta);
-                        break;
-                    case epsilon:
-                        buttonEpsilon.setForeground(Color.magenta);
-                        break;
-                    default:
-                        break;
-                    }
-                }
             });
 
             addMouseMotionListener(new MouseAdapter() {
                 public void mouseDragged(MouseEvent event) {
                     stop = event.getPoint();
                     g.add(stop);
+                    stroke.add(stop.x, stop.y);
+                    if (early) {
+                        recognizer.update();
+                    }
                     Path2D path = (Path2D) shape;
                     path.moveTo(start.x, start.y);
                     path.lineTo(stop.x, stop.y);
@@ -272,6 +524,34 @@ public class NeuralNetworkUI extends JFrame {
             });
         }
 
+        void showResult(String result) {
+            buttonAlpha.setForeground(Color.black);
+            buttonBeta.setForeground(Color.black);
+            buttonGamma.setForeground(Color.black);
+            buttonDelta.setForeground(Color.black);
+            buttonEpsilon.setForeground(Color.black);
+
+            switch (result) {
+            case alpha:
+                buttonAlpha.setForeground(Color.magenta);
+                break;
+            case beta:
+                buttonBeta.setForeground(Color.magenta);
+                break;
+            case gamma:
+                buttonGamma.setForeground(Color.magenta);
+                break;
+            case delta:
+                buttonDelta.setForeground(Color.magenta);
+                break;
+            case epsilon:
+                buttonEpsilon.setForeground(Color.magenta);
+                break;
+            default:
+                break;
+            }
+        }
+
         public void paintComponent(Graphics gc) {
             super.paintComponent(gc);
             Graphics2D g2 = (Graphics2D) gc;
@@ -16,6 +16,6 @@ public class Neuron {
 
     // transfer function
     public static double sigm(double net) {
-        return 1.0 / (1.0 + Math.pow(Math.E, -net));
+        return 1.0 / (1.0 + Math.exp(-net));
     }
 }
@@ -0,0 +1,97 @@
+package neural_network;
+
+/**
+ * Turns accumulated corrections into weight updates. Corrections passed to
+ * the optimizer are raw, the sum of y * error over the samples of a step
+ * without the learning rate, and point in the direction the error decreases.
+ * State of adaptive optimizers is kept per weight in flat arrays with the
+ * same layout as the network's weights and bias. Parameter arrays are
+ * numbered 2k for weights and 2k+1 for bias of layer k+1.
+ *
+ * An optimizer belongs to one network at a time, training a new network
+ * resets its state.
+ */
+public abstract class Optimizer {
+    // number of steps since the last reset
+    int steps;
+
+    /**
+     * Creates optimizer by name, one of sgd, momentum, nesterov, rmsprop and
+     * adam, all with their default parameters.
+     *
+     * @param name
+     *            Name of the optimizer
+     * @return New optimizer
+     * @throws NeuralNetworkException
+     *             If there is no optimizer with the given name
+     */
+    public static Optimizer forName(String name)
+            throws NeuralNetworkException {
+        String n = name.trim().toLowerCase();
+        if (n.equals("sgd")) {
+            return new SgdOptimizer();
+        }
+        if (n.equals("momentum")) {
+            return new MomentumOptimizer();
+        }
+        if (n.equals("nesterov")) {
+            return new NesterovOptimizer();
+        }
+        if (n.equals("rmsprop")) {
+            return new RmsPropOptimizer();
+        }
+        if (n.equals("adam")) {
+            return new AdamOptimizer();
+        }
+        throw new NeuralNetworkException("Unknown optimizer " + name + ".");
+    }
+
+    /**
+     * Discards the state and allocates it for a network.
+     *
+     * @param lengths
+     *            Lengths of the network's parameter arrays
+     */
+    void reset(int[] lengths) {
+        steps = 0;
+    }
+
+    // called once before the parameter arrays of a step are updated
+    void beginStep() {
+        steps++;
+    }
+
+    /**
+     * Updates one parameter array and clears its corrections.
+     *
+     * @param p
+     *            Number of the parameter array
+     * @param params
+     *            Weights or bias being updated
+     * @param corrections
+     *            Raw corrections of params, set to 0 after the update
+     * @param lr
+     *            Learning rate of the step
+     * @return Sum of squared changes of params
+     */
+    abstract double update(int p, double[] params, double[] corrections,
+            double lr);
+
+    /**
+     * @return true if the update is just params += lr * corrections, such
+     *         corrections of a single sample are added directly to the
+     *         weights
+     */
+    boolean direct() {
+        return false;
+    }
+
+    // arrays of the given lengths, used for the optimizer state
+    static double[][] allocate(int[] lengths) {
+        double[][] state = new double[lengths.length][];
+        for (int p = 0; p < lengths.length; p++) {
+            state[p] = new double[lengths[p]];
+        }
+        return state;
+    }
+}
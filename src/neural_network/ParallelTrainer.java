@@ -0,0 +1,209 @@
+package neural_network;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Data-parallel trainer for batch and mini-batch backpropagation. Every batch
+ * is split into one contiguous chunk per worker, each worker computes
+ * corrections of its chunk into private buffers and the buffers are then
+ * reduced in worker order into the network's accumulated corrections. For the
+ * same samples and number of workers the result is therefore always the
+ * same, no matter how the pool schedules the tasks. A whole epoch runs as
+ * one task of the pool and the tasks of the workers are created once and
+ * reused by every batch.
+ */
+class ParallelTrainer {
+    private final FlatNetwork net;
+    private final ForkJoinPool pool;
+    private final int workers;
+    // private buffers of each worker
+    private final Workspace[] workspaces;
+    private final double[][][] corrections;
+    private final double[][][] biasCorrections;
+    private final double[] errors;
+    // tasks reused by every epoch and batch
+    private final EpochTask epochTask = new EpochTask();
+    private final ChunkTask[] chunkTasks;
+    private final ReduceTask[] reduceTasks;
+    // epoch being trained, set before the epoch task is invoked
+    private Dataset samples;
+    private int[] order;
+    private int batchSize;
+    private double lr;
+
+    ParallelTrainer(FlatNetwork net, ForkJoinPool pool, int workers) {
+        this.net = net;
+        this.pool = pool;
+        this.workers = workers;
+        workspaces = new Workspace[workers];
+        corrections = new double[workers][][];
+        biasCorrections = new double[workers][][];
+        errors = new double[workers];
+        chunkTasks = new ChunkTask[workers];
+        reduceTasks = new ReduceTask[workers];
+        for (int t = 0; t < workers; t++) {
+            workspaces[t] = net.newWorkspace();
+            corrections[t] = new double[net.e.length][];
+            biasCorrections[t] = new double[net.eb.length][];
+            for (int k = 0; k < net.e.length; k++) {
+                corrections[t][k] = new double[net.e[k].length];
+                biasCorrections[t][k] = new double[net.eb[k].length];
+            }
+            chunkTasks[t] = new ChunkTask(t);
+            reduceTasks[t] = new ReduceTask(t);
+        }
+    }
+
+    // workspaces of the workers, used to collect metrics
+    Workspace[] workspaces() {
+        return workspaces;
+    }
+
+    /**
+     * Trains one epoch. Corrections are applied after every full batch, a
+     * batch that isn't full at the end of the epoch stays accumulated, just
+     * like in {@link FlatNetwork#train}.
+     *
+     * @param samples
+     *            Samples to train on
+     * @param order
+     *            Indexes of samples in the order they are visited
+     * @param batchSize
+     *            Number of samples of one weight update
+     * @param lr
+     *            Learning rate
+     * @return Sum of errors of all samples
+     */
+    double epoch(Dataset samples, int[] order, int batchSize, double lr) {
+        this.samples = samples;
+        this.order = order;
+        this.batchSize = batchSize;
+        this.lr = lr;
+        epochTask.reinitialize();
+        pool.invoke(epochTask);
+        this.samples = null;
+        this.order = null;
+        return epochTask.sumE;
+    }
+
+    // accumulates corrections of samples from the given range of the order
+    // into the network's accumulated corrections, runs in the pool
+    private double accumulateBatch(int from, int to) {
+        int chunks = Math.min(workers, to - from);
+        for (int c = 0; c < chunks; c++) {
+            chunkTasks[c].reinitialize();
+            chunkTasks[c].start = from + (int) ((long) (to - from) * c
+                    / chunks);
+            chunkTasks[c].end = from + (int) ((long) (to - from) * (c + 1)
+                    / chunks);
+        }
+        invokeAll(chunkTasks, chunks);
+        for (int p = 0; p < workers; p++) {
+            reduceTasks[p].reinitialize();
+            reduceTasks[p].chunks = chunks;
+        }
+        invokeAll(reduceTasks, workers);
+
+        double sumE = 0;
+        for (int c = 0; c < chunks; c++) {
+            sumE += errors[c];
+        }
+        return sumE;
+    }
+
+    // runs the first n tasks and waits for all of them, the first one on
+    // the current thread
+    private static void invokeAll(RecursiveAction[] tasks, int n) {
+        for (int c = n - 1; c > 0; c--) {
+            tasks[c].fork();
+        }
+        tasks[0].invoke();
+        for (int c = 1; c < n; c++) {
+            tasks[c].join();
+        }
+    }
+
+    private double accumulateChunk(int t, int start, int end) {
+        Workspace ws = workspaces[t];
+        double[][] target = corrections[t];
+        double[][] targetB = biasCorrections[t];
+        double sumE = 0;
+        for (int p = start; p < end; p++) {
+            int s = order[p];
+            net.forward(ws, samples.x, samples.inputOffset(s));
+            sumE += net.backward(ws, samples.t, samples.outputOffset(s));
+            net.addCorrections(ws, target, targetB, 1);
+        }
+        return sumE;
+    }
+
+    private void reducePart(double[] target, double[][][] source, int k,
+            int part, int chunks) {
+        int start = (int) ((long) target.length * part / workers);
+        int end = (int) ((long) target.length * (part + 1) / workers);
+        for (int c = 0; c < chunks; c++) {
+            double[] ck = source[c][k];
+            for (int i = start; i < end; i++) {
+                target[i] += ck[i];
+                ck[i] = 0;
+            }
+        }
+    }
+
+    // trains the batches of the epoch one after another
+    private class EpochTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        double sumE;
+
+        @Override
+        protected void compute() {
+            sumE = 0;
+            int size = samples.rows;
+            for (int from = 0; from < size; from += batchSize) {
+                int to = Math.min(from + batchSize, size);
+                sumE += accumulateBatch(from, to);
+                if (to % batchSize == 0) {
+                    net.addAccumulatedError(lr);
+                }
+            }
+        }
+    }
+
+    // computes corrections of a chunk of the batch into worker's buffers
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int worker;
+        int start;
+        int end;
+
+        ChunkTask(int worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        protected void compute() {
+            errors[worker] = accumulateChunk(worker, start, end);
+        }
+    }
+
+    // adds worker corrections to the network in fixed worker order, every
+    // worker of the pool reduces its own part of the weights
+    private class ReduceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int part;
+        int chunks;
+
+        ReduceTask(int part) {
+            this.part = part;
+        }
+
+        @Override
+        protected void compute() {
+            for (int k = 0; k < net.e.length; k++) {
+                reducePart(net.e[k], corrections, k, part, chunks);
+                reducePart(net.eb[k], biasCorrections, k, part, chunks);
+            }
+        }
+    }
+}
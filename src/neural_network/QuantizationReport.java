@@ -0,0 +1,78 @@
+package neural_network;
+
+import java.io.IOException;
+
+/**
+ * Compares accuracy of a model with its single precision and quantized
+ * copies. Usage: QuantizationReport [model file] [sample file], defaults are
+ * the files used by {@link NeuralNetworkUI}.
+ */
+public class QuantizationReport {
+    // share of samples recognized correctly by the compared model
+    final double accuracy;
+    // share of samples where both models recognize the same gesture
+    final double agreement;
+    // largest difference of an output of the compared model from the
+    // reference model
+    final double maxDrift;
+
+    /**
+     * Compares recognitions of the samples by two models.
+     *
+     * @param reference
+     *            Model the other one is compared with
+     * @param model
+     *            Compared model
+     * @param samples
+     *            Samples fitting both models
+     */
+    QuantizationReport(InferenceModel reference, InferenceModel model,
+            Dataset samples) {
+        double[] x = new double[samples.inputs];
+        double[] expected = new double[samples.outputs];
+        double[] actual = new double[samples.outputs];
+        int correct = 0;
+        int agree = 0;
+        double drift = 0;
+        for (int r = 0; r < samples.rows; r++) {
+            System.arraycopy(samples.x, samples.inputOffset(r), x, 0, x.length);
+            int e = reference.infer(x, expected);
+            int a = model.infer(x, actual);
+            correct += a == samples.label(r) ? 1 : 0;
+            agree += a == e ? 1 : 0;
+            for (int i = 0; i < expected.length; i++) {
+                drift = Math.max(drift, Math.abs(actual[i] - expected[i]));
+            }
+        }
+        accuracy = (double) correct / samples.rows;
+        agreement = (double) agree / samples.rows;
+        maxDrift = drift;
+    }
+
+    public static void main(String[] args) throws IOException,
+            NeuralNetworkException {
+        String modelFile = args.length > 0 ? args[0]
+                : NeuralNetworkUI.modelFile;
+        String file = args.length > 1 ? args[1] : NeuralNetworkUI.samplesFile;
+        TrainedModel model = ModelIO.load(modelFile);
+        Dataset samples = SampleLoader.load(file, 2 * model.getM(),
+                model.outputSize());
+        QuantizationReport double64 = new QuantizationReport(model, model,
+                samples);
+        QuantizationReport float32 = new QuantizationReport(model,
+                model.toFloatModel(), samples);
+        QuantizationReport int8 = new QuantizationReport(model,
+                model.quantize(), samples);
+
+        System.out.println("samples: " + samples.rows);
+        System.out.println("double accuracy: " + double64.accuracy);
+        System.out.println("float " + float32);
+        System.out.println("int8 " + int8);
+    }
+
+    @Override
+    public String toString() {
+        return "accuracy: " + accuracy + ", agreement with double: "
+                + agreement + ", max output drift: " + maxDrift;
+    }
+}
@@ -0,0 +1,146 @@
+package neural_network;
+
+/**
+ * Post-training 8-bit quantized copy of a trained model for inference.
+ * 
+ * Weights of every layer are mapped linearly to bytes, w = scale * (q -
+ * zeroPoint) with scale and zero point chosen per layer so the layer's
+ * smallest and largest weight map to -128 and 127. Inputs of every layer are
+ * quantized when they are computed, symmetrically with the step that maps
+ * their largest absolute value to 127, so any transfer function can be used.
+ * Products are accumulated in integers and only the sum of every neuron is
+ * scaled back, biases stay in floating point. Like {@link TrainedModel} it
+ * is immutable and can be shared between threads.
+ */
+public class QuantizedModel implements InferenceModel {
+    private final int[] sizes;
+    // quantized weights, same layout as weights of the double model
+    private final byte[][] w;
+    private final float[] scale;
+    private final int[] zeroPoint;
+    private final float[][] b;
+    private final int M;
+    private final Activation[] activations;
+    private final boolean softmax;
+    // quantized inputs of a layer and outputs of a layer
+    private final ThreadLocal<int[]> quantized = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[max(sizes)];
+        }
+    };
+    private final ThreadLocal<double[]> outputs = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[max(sizes)];
+        }
+    };
+
+    QuantizedModel(FlatNetwork net, int M) {
+        this.sizes = net.sizes.clone();
+        this.M = M;
+        this.activations = net.activations;
+        this.softmax = net.softmax;
+        int layers = net.w.length;
+        w = new byte[layers][];
+        scale = new float[layers];
+        zeroPoint = new int[layers];
+        b = new float[layers][];
+        for (int k = 0; k < layers; k++) {
+            double[] wk = net.w[k];
+            double min = 0;
+            double max = 0;
+            for (double v : wk) {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            double s = max > min ? (max - min) / 255 : 1;
+            int z = (int) Math.round(-128 - min / s);
+            scale[k] = (float) s;
+            zeroPoint[k] = z;
+            w[k] = new byte[wk.length];
+            for (int i = 0; i < wk.length; i++) {
+                long q = Math.round(wk[i] / s) + z;
+                w[k][i] = (byte) Math.max(-128, Math.min(127, q));
+            }
+            b[k] = new float[sizes[k + 1]];
+            for (int j = 0; j < sizes[k + 1]; j++) {
+                b[k][j] = (float) net.b[k][j];
+            }
+        }
+    }
+
+    private static int max(int[] sizes) {
+        int max = 0;
+        for (int size : sizes) {
+            max = Math.max(max, size);
+        }
+        return max;
+    }
+
+    @Override
+    public int getM() {
+        return M;
+    }
+
+    @Override
+    public int inputSize() {
+        return sizes[0];
+    }
+
+    @Override
+    public int outputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    @Override
+    public int infer(double[] x, double[] output) {
+        int[] q = quantized.get();
+        double[] y = outputs.get();
+        System.arraycopy(x, 0, y, 0, sizes[0]);
+        for (int k = 0; k < w.length; k++) {
+            int n = sizes[k];
+            int m = sizes[k + 1];
+            // quantizes outputs of layer k
+            double maxAbs = 0;
+            for (int i = 0; i < n; i++) {
+                maxAbs = Math.max(maxAbs, Math.abs(y[i]));
+            }
+            double inputScale = maxAbs > 0 ? maxAbs / 127 : 1;
+            int inSum = 0;
+            for (int i = 0; i < n; i++) {
+                q[i] = (int) Math.round(y[i] / inputScale);
+                inSum += q[i];
+            }
+
+            byte[] wk = w[k];
+            int z = zeroPoint[k];
+            double s = scale[k] * inputScale;
+            Activation activation = activations[k];
+            for (int j = 0, row = 0; j < m; j++, row += n) {
+                int acc = 0;
+                for (int i = 0; i < n; i++) {
+                    acc += wk[row + i] * q[i];
+                }
+                // removes the zero point, sum of (w - z) * q
+                acc -= z * inSum;
+                double net = s * acc + b[k][j];
+                y[j] = activation == null ? net : activation.apply(net);
+            }
+        }
+        int outputs = outputSize();
+        if (softmax) {
+            FlatNetwork.softmax(y, 0, outputs);
+        }
+        int maxIndex = 0;
+        for (int i = 0; i < outputs; i++) {
+            if (y[i] > y[maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        if (output != null) {
+            System.arraycopy(y, 0, output, 0, outputs);
+        }
+        return maxIndex;
+    }
+}
@@ -0,0 +1,72 @@
+package neural_network;
+
+/**
+ * Gesture recognized from the part of a stroke drawn so far, see
+ * {@link EarlyRecognizer}.
+ */
+public class Recognition {
+    private final int gesture;
+    private final double confidence;
+    private final double[] probabilities;
+    private final long points;
+    private final long elapsedMillis;
+
+    Recognition(int gesture, double[] probabilities, long points,
+            long elapsedMillis) {
+        this.gesture = gesture;
+        this.confidence = probabilities[gesture];
+        this.probabilities = probabilities;
+        this.points = points;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return Index of the recognized gesture, 0 for alpha to 4 for epsilon
+     */
+    public int getGesture() {
+        return gesture;
+    }
+
+    /**
+     * @return Name of the recognized gesture
+     */
+    public String getLabel() {
+        return NeuralNetwork.label(gesture);
+    }
+
+    /**
+     * @return Probability of the recognized gesture, see
+     *         {@link NeuralNetwork#inferBatch(double[], int, int[], double[])}
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return Probabilities of all gestures
+     */
+    public double[] getProbabilities() {
+        return probabilities.clone();
+    }
+
+    /**
+     * @return Number of points of the stroke that were recognized
+     */
+    public long getPoints() {
+        return points;
+    }
+
+    /**
+     * @return Time from the start of the stroke until the recognition
+     *         finished
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return getLabel() + String.format(" %.2f", confidence) + " after "
+                + points + " points, " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,320 @@
+package neural_network;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Remembers recognitions of recently seen gestures. Values of a gesture
+ * representation are rounded to multiples of the granularity, gestures whose
+ * representations round to the same values are recognized only once.
+ * Recognitions are spread over up to 16 stripes with their own locks, so
+ * threads recognizing different gestures rarely wait for each other. When a
+ * stripe is full, its least recently used recognition is evicted. A lookup
+ * doesn't allocate, only caching a new recognition does.
+ * Recognitions belong to the model that computed them, the cache is cleared
+ * the first time it sees a different model, so retraining, fine-tuning and
+ * loading a model invalidate it.
+ */
+public class RecognitionCache implements RecognitionCacheMBean {
+    static final String OBJECT_NAME = "neural_network:type=RecognitionCache";
+    // upper bound of the number of stripes
+    private static final int STRIPES = 16;
+
+    private final int capacity;
+    private final double granularity;
+    // recognitions are spread over stripes by hash of the key, each stripe
+    // has its own lock and evicts its own least recently used recognition
+    private final Stripe[] stripes;
+    // key of the lookup of each thread, reused by every lookup
+    private final ThreadLocal<Key> probes = new ThreadLocal<Key>() {
+        @Override
+        protected Key initialValue() {
+            return new Key();
+        }
+    };
+    // model whose recognitions are cached
+    private volatile TrainedModel owner;
+    private long invalidations;
+
+    /**
+     * @param capacity
+     *            Maximum number of cached recognitions
+     * @param granularity
+     *            Representation values are rounded to its multiples, smaller
+     *            values separate more similar gestures
+     */
+    public RecognitionCache(int capacity, double granularity) {
+        if (capacity < 1 || !(granularity > 0)) {
+            throw new IllegalArgumentException(
+                    "Invalid capacity or granularity of the cache.");
+        }
+        this.capacity = capacity;
+        this.granularity = granularity;
+        int n = 1;
+        while (n < STRIPES && 2 * n <= capacity) {
+            n *= 2;
+        }
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe(capacity / n
+                    + (i < capacity % n ? 1 : 0));
+        }
+    }
+
+    // replaces the cache registered before
+    void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.out.println("Can't register recognition cache: "
+                    + e.getMessage());
+        }
+    }
+
+    void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            System.out.println("Can't unregister recognition cache: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Looks up recognition of the gesture. A hit doesn't allocate.
+     *
+     * @param model
+     *            Model used for inference
+     * @param x
+     *            Gesture representation
+     * @param output
+     *            Receives the cached output of the network, may be null
+     * @return Index of the recognized gesture or -1 if it's not cached
+     */
+    int get(TrainedModel model, double[] x, double[] output) {
+        if (model != owner) {
+            invalidate(model);
+        }
+        Key probe = probes.get();
+        probe.set(x, granularity);
+        Stripe stripe = stripe(probe);
+        synchronized (stripe) {
+            Cached entry = model == owner ? stripe.get(probe) : null;
+            if (entry == null) {
+                stripe.misses++;
+                return -1;
+            }
+            stripe.hits++;
+            if (output != null) {
+                System.arraycopy(entry.output, 0, output, 0,
+                        entry.output.length);
+            }
+            return entry.gesture;
+        }
+    }
+
+    /**
+     * Caches recognition of the gesture, unless the model changed since it
+     * was looked up.
+     */
+    void put(TrainedModel model, double[] x, int gesture, double[] output) {
+        Key probe = probes.get();
+        probe.set(x, granularity);
+        Stripe stripe = stripe(probe);
+        synchronized (stripe) {
+            if (model == owner) {
+                stripe.put(probe.copy(), new Cached(gesture, output.clone()));
+            }
+        }
+    }
+
+    // clears recognitions of the previous model, a put of the previous model
+    // either finds its stripe not cleared yet or the owner already changed
+    private synchronized void invalidate(TrainedModel model) {
+        if (model == owner) {
+            return;
+        }
+        if (owner != null) {
+            invalidations++;
+        }
+        owner = null;
+        clear();
+        owner = model;
+    }
+
+    private Stripe stripe(Key key) {
+        int h = key.hash ^ (key.hash >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getGranularity() {
+        return granularity;
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        long hits = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long getMisses() {
+        long misses = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                misses += stripe.misses;
+            }
+        }
+        return misses;
+    }
+
+    public long getEvictions() {
+        long evictions = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evictions += stripe.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public void resetCounters() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.hits = 0;
+                stripe.misses = 0;
+                stripe.evictions = 0;
+            }
+        }
+        synchronized (this) {
+            invalidations = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Cache " + getSize() + "/" + capacity + ", hits " + getHits()
+                + ", misses " + getMisses() + ", evictions " + getEvictions()
+                + ", invalidations " + getInvalidations();
+    }
+
+    // recognitions of one stripe in access order, guarded by the stripe
+    private static class Stripe extends LinkedHashMap<Key, Cached> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        long hits;
+        long misses;
+        long evictions;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+            if (size() > capacity) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // gesture representation rounded to multiples of the granularity, keys
+    // of lookups are reused and only copies of them are stored
+    private static class Key {
+        private long[] values = new long[0];
+        private int hash;
+
+        void set(double[] x, double granularity) {
+            if (values.length != x.length) {
+                values = new long[x.length];
+            }
+            for (int i = 0; i < x.length; i++) {
+                // kept as long, narrowing to int would wrap for small
+                // granularities and merge different gestures
+                values[i] = Math.round(x[i] / granularity);
+            }
+            hash = Arrays.hashCode(values);
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.values = values.clone();
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash
+                    && Arrays.equals(((Key) o).values, values);
+        }
+    }
+
+    private static class Cached {
+        final int gesture;
+        final double[] output;
+
+        Cached(int gesture, double[] output) {
+            this.gesture = gesture;
+            this.output = output;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package neural_network;
+
+/**
+ * JMX view of {@link RecognitionCache}, registered as
+ * neural_network:type=RecognitionCache while the cache is in use.
+ */
+public interface RecognitionCacheMBean {
+    int getCapacity();
+
+    double getGranularity();
+
+    int getSize();
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getInvalidations();
+
+    double getHitRate();
+
+    void clear();
+
+    void resetCounters();
+}
@@ -0,0 +1,27 @@
+package neural_network;
+
+/**
+ * Receives recognitions of a stroke that is still being drawn. Methods are
+ * called on the recognition thread, user interfaces should hand the
+ * recognition over to their own thread.
+ */
+public interface RecognitionListener {
+    /**
+     * Called after every recognition of the stroke drawn so far.
+     *
+     * @param recognition
+     *            Latest recognition
+     */
+    void prediction(Recognition recognition);
+
+    /**
+     * Called at most once per stroke, when the agreement number of
+     * recognitions in a row all recognize the same gesture with confidence
+     * of at least the threshold, see
+     * {@link EarlyRecognizer#setPolicy(long, double, int, int)}.
+     *
+     * @param recognition
+     *            Last of the agreeing recognitions
+     */
+    void decided(Recognition recognition);
+}
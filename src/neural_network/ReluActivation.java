@@ -0,0 +1,16 @@
+package neural_network;
+
+/**
+ * Rectified linear unit, max(0, net).
+ */
+public class ReluActivation implements Activation {
+    @Override
+    public double apply(double net) {
+        return net > 0 ? net : 0;
+    }
+
+    @Override
+    public double derivative(double y) {
+        return y > 0 ? 1 : 0;
+    }
+}
@@ -0,0 +1,76 @@
+package neural_network;
+
+import java.util.Random;
+
+/**
+ * Bounded sample of all samples a network was trained on, kept with
+ * reservoir sampling so every sample seen so far is equally likely to be in
+ * the buffer. Fine-tuning mixes samples from the buffer into its batches so
+ * the network doesn't forget what it learned before. Samples are kept in
+ * the same layout as {@link Dataset}.
+ */
+class ReplayBuffer {
+    private final int capacity;
+    private final int inputs;
+    private final int outputs;
+    final double[] x;
+    final double[] t;
+    private final Random random;
+    // number of samples in the buffer and number of samples ever added
+    private int size;
+    private long seen;
+
+    ReplayBuffer(int capacity, int inputs, int outputs, Random random) {
+        this.capacity = capacity;
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.random = random;
+        x = new double[capacity * inputs];
+        t = new double[capacity * outputs];
+    }
+
+    boolean fits(int inputs, int outputs) {
+        return this.inputs == inputs && this.outputs == outputs;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void addAll(Dataset samples) {
+        for (int r = 0; r < samples.rows; r++) {
+            add(samples, r);
+        }
+    }
+
+    void add(Dataset samples, int row) {
+        seen++;
+        int slot;
+        if (size < capacity) {
+            slot = size++;
+        } else {
+            long r = (long) (random.nextDouble() * seen);
+            if (r >= capacity) {
+                return;
+            }
+            slot = (int) r;
+        }
+        System.arraycopy(samples.x, samples.inputOffset(row), x, slot
+                * inputs, inputs);
+        System.arraycopy(samples.t, samples.outputOffset(row), t, slot
+                * outputs, outputs);
+    }
+
+    // view of the samples in the buffer, valid until a sample is added
+    Dataset samples() {
+        return new Dataset(x, t, size, inputs, outputs);
+    }
+
+    int inputOffset(int slot) {
+        return slot * inputs;
+    }
+
+    int outputOffset(int slot) {
+        return slot * outputs;
+    }
+}
@@ -0,0 +1,49 @@
+package neural_network;
+
+/**
+ * RMSProp, divides the step of every weight by the running root mean square
+ * of its corrections, so weights with small corrections still move. Works
+ * best with a learning rate around 0.001.
+ */
+public class RmsPropOptimizer extends Optimizer {
+    private final double decay;
+    private final double epsilon;
+    // running mean of squared corrections
+    private double[][] meanSquare;
+
+    public RmsPropOptimizer() {
+        this(0.9, 1e-8);
+    }
+
+    /**
+     * @param decay
+     *            Weight of the old mean in the running mean, between 0 and 1
+     * @param epsilon
+     *            Added to the root mean square to avoid division by 0
+     */
+    public RmsPropOptimizer(double decay, double epsilon) {
+        this.decay = decay;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    void reset(int[] lengths) {
+        super.reset(lengths);
+        meanSquare = allocate(lengths);
+    }
+
+    @Override
+    double update(int p, double[] params, double[] corrections, double lr) {
+        double[] s = meanSquare[p];
+        double squares = 0;
+        for (int i = 0; i < params.length; i++) {
+            double g = corrections[i];
+            s[i] = decay * s[i] + (1 - decay) * g * g;
+            double d = lr * g / (Math.sqrt(s[i]) + epsilon);
+            params[i] += d;
+            corrections[i] = 0;
+            squares += d * d;
+        }
+        return squares;
+    }
+}
@@ -0,0 +1,439 @@
+package neural_network;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads samples from text and binary files.
+ * 
+ * Text files hold whitespace separated numbers, every sample is made of its
+ * inputs followed by its expected outputs. They are read in large blocks and
+ * parsed by a hand-written tokenizer, parsed numbers may differ from
+ * {@link Double#parseDouble} in the last bit. Files have to be ASCII, any
+ * other character is reported with its line.
+ * 
+ * Binary files are big-endian. Inputs of all samples come first and
+ * expected outputs of all samples after them, so either matrix can be read
+ * without the other, but within a matrix values of one sample are next to
+ * each other:
+ * 
+ * <pre>
+ * int    magic "NNDS"
+ * int    version
+ * int    number of samples
+ * int    number of inputs
+ * int    number of outputs
+ * int    padding, matrices start at a multiple of 8
+ * double[samples * inputs]  inputs, row-major
+ * double[samples * outputs] expected outputs, row-major
+ * </pre>
+ */
+public class SampleLoader {
+    private static final int MAGIC = 0x4E4E4453;
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private SampleLoader() {
+    }
+
+    /**
+     * Loads samples from a text or binary file, the format is recognized by
+     * the file's content.
+     * 
+     * @param file
+     *            Path of the file
+     * @param inputs
+     *            Number of inputs of a sample
+     * @param outputs
+     *            Number of outputs of a sample
+     * @return Loaded samples
+     * @throws NeuralNetworkException
+     *             If the file doesn't exist, can't be read or doesn't match
+     *             the given numbers of inputs and outputs
+     */
+    public static Dataset load(String file, int inputs, int outputs)
+            throws NeuralNetworkException {
+        try {
+            if (isBinary(file)) {
+                return loadBinary(file, inputs, outputs);
+            }
+            return loadText(file, inputs, outputs);
+        } catch (FileNotFoundException e) {
+            throw new NeuralNetworkException("Can't find file " + file);
+        } catch (IOException e) {
+            throw new NeuralNetworkException("Can't read file " + file + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private static boolean isBinary(String file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] magic = new byte[4];
+            int n = 0;
+            while (n < 4) {
+                int read = in.read(magic, n, 4 - n);
+                if (read < 0) {
+                    return false;
+                }
+                n += read;
+            }
+            return ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    static Dataset loadText(String file, int inputs, int outputs)
+            throws IOException, NeuralNetworkException {
+        try (InputStream in = new FileInputStream(file)) {
+            Tokenizer tokenizer = new Tokenizer(in);
+            double[] x = new double[1024 * inputs];
+            double[] t = new double[1024 * outputs];
+            int rows = 0;
+            while (tokenizer.hasNext()) {
+                if ((rows + 1) * inputs > x.length) {
+                    x = Arrays.copyOf(x, 2 * x.length);
+                    t = Arrays.copyOf(t, 2 * t.length);
+                }
+                for (int i = 0, offset = rows * inputs; i < inputs; i++) {
+                    x[offset + i] = tokenizer.next();
+                }
+                for (int i = 0, offset = rows * outputs; i < outputs; i++) {
+                    t[offset + i] = tokenizer.next();
+                }
+                rows++;
+            }
+            return new Dataset(x, t, rows, inputs, outputs);
+        }
+    }
+
+    /**
+     * Loads samples from a binary file by mapping it to memory and copying
+     * both matrices in bulk.
+     * 
+     * @param file
+     *            Path of the file
+     * @param inputs
+     *            Number of inputs of a sample
+     * @param outputs
+     *            Number of outputs of a sample
+     * @return Loaded samples
+     * @throws IOException
+     *             If the file can't be read
+     * @throws NeuralNetworkException
+     *             If the file is not a valid binary dataset
+     */
+    static Dataset loadBinary(String file, int inputs, int outputs)
+            throws IOException, NeuralNetworkException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new NeuralNetworkException("Invalid dataset file size.");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new NeuralNetworkException(
+                        "Dataset file is too large to load, train on it with streaming.");
+            }
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, size);
+            int rows = readHeader(buffer, inputs, outputs);
+            if (HEADER_SIZE + 8L * rows * (inputs + outputs) != size) {
+                throw new NeuralNetworkException(
+                        "Dataset file doesn't match its header.");
+            }
+            double[] x = new double[rows * inputs];
+            double[] t = new double[rows * outputs];
+            buffer.position(HEADER_SIZE);
+            DoubleBuffer doubles = buffer.asDoubleBuffer();
+            doubles.get(x);
+            doubles.get(t);
+            return new Dataset(x, t, rows, inputs, outputs);
+        }
+    }
+
+    // checks the header and returns the number of samples
+    static int readHeader(ByteBuffer buffer, int inputs, int outputs)
+            throws NeuralNetworkException {
+        if (buffer.getInt() != MAGIC) {
+            throw new NeuralNetworkException("Not a dataset file.");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new NeuralNetworkException("Unsupported dataset version "
+                    + version + ".");
+        }
+        int rows = buffer.getInt();
+        if (rows < 0 || buffer.getInt() != inputs
+                || buffer.getInt() != outputs) {
+            throw new NeuralNetworkException(
+                    "Dataset doesn't match the network's input and output layers.");
+        }
+        return rows;
+    }
+
+    static ByteBuffer header(int rows, int inputs, int outputs) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(rows);
+        header.putInt(inputs);
+        header.putInt(outputs);
+        header.putInt(0);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Writes samples in the binary format. The target file is replaced only
+     * after all samples are written.
+     * 
+     * @param dataset
+     *            Samples to write
+     * @param file
+     *            Path of the binary file
+     * @throws IOException
+     *             If the file can't be written
+     */
+    public static void saveBinary(Dataset dataset, String file)
+            throws IOException {
+        Path target = Paths.get(file).toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), "samples", ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.WRITE)) {
+            write(channel, header(dataset.rows, dataset.inputs,
+                    dataset.outputs));
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            writeDoubles(channel, buffer, dataset.x, dataset.rows
+                    * dataset.inputs);
+            writeDoubles(channel, buffer, dataset.t, dataset.rows
+                    * dataset.outputs);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Converts a text sample file to the binary format.
+     * 
+     * @param textFile
+     *            Path of the text file
+     * @param binaryFile
+     *            Path of the binary file
+     * @param inputs
+     *            Number of inputs of a sample
+     * @param outputs
+     *            Number of outputs of a sample
+     * @throws NeuralNetworkException
+     *             If the text file can't be loaded or the binary file can't
+     *             be written
+     */
+    public static void convert(String textFile, String binaryFile,
+            int inputs, int outputs) throws NeuralNetworkException {
+        Dataset dataset = load(textFile, inputs, outputs);
+        try {
+            saveBinary(dataset, binaryFile);
+        } catch (IOException e) {
+            throw new NeuralNetworkException("Can't write file " + binaryFile
+                    + ": " + e.getMessage());
+        }
+    }
+
+    static void writeDoubles(FileChannel channel, ByteBuffer buffer,
+            double[] values, int length) throws IOException {
+        buffer.clear();
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        for (int i = 0; i < length;) {
+            int n = Math.min(doubles.capacity(), length - i);
+            doubles.clear();
+            doubles.put(values, i, n);
+            buffer.clear();
+            buffer.limit(8 * n);
+            write(channel, buffer);
+            i += n;
+        }
+    }
+
+    static void write(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads numbers separated by whitespace without creating a String for
+     * each of them.
+     */
+    static class Tokenizer {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int length;
+        // current byte, -1 at the end of the stream
+        private int c;
+        // line of the current byte
+        private int line = 1;
+
+        Tokenizer(InputStream in) throws IOException {
+            this.in = in;
+            this.c = read();
+        }
+
+        private int read() throws IOException {
+            if (position == length) {
+                length = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (length <= 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        boolean hasNext() throws IOException {
+            skipWhitespace();
+            return c >= 0;
+        }
+
+        double next() throws IOException, NeuralNetworkException {
+            skipWhitespace();
+            if (c < 0) {
+                throw new NeuralNetworkException(
+                        "Unexpected end of file, last sample is incomplete.");
+            }
+            boolean negative = false;
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                c = read();
+            }
+            long mantissa = 0;
+            int digits = 0;
+            // decimal exponent of the mantissa
+            int exponent = 0;
+            boolean any = false;
+            while (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = 10 * mantissa + (c - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exponent++;
+                }
+                any = true;
+                c = read();
+            }
+            if (c == '.') {
+                c = read();
+                while (c >= '0' && c <= '9') {
+                    if (digits < 18) {
+                        mantissa = 10 * mantissa + (c - '0');
+                        if (mantissa != 0) {
+                            digits++;
+                        }
+                        exponent--;
+                    }
+                    any = true;
+                    c = read();
+                }
+            }
+            if (!any) {
+                throw unexpected();
+            }
+            if (c == 'e' || c == 'E') {
+                c = read();
+                boolean negativeExponent = false;
+                if (c == '-' || c == '+') {
+                    negativeExponent = c == '-';
+                    c = read();
+                }
+                int e = 0;
+                boolean anyExponent = false;
+                while (c >= '0' && c <= '9') {
+                    if (e < 10000) {
+                        e = 10 * e + (c - '0');
+                    }
+                    anyExponent = true;
+                    c = read();
+                }
+                if (!anyExponent) {
+                    throw unexpected();
+                }
+                exponent += negativeExponent ? -e : e;
+            }
+            if (c >= 0 && !isWhitespace(c)) {
+                throw unexpected();
+            }
+            double value = scale(mantissa, exponent);
+            return negative ? -value : value;
+        }
+
+        private static double scale(long mantissa, int exponent) {
+            double value = mantissa;
+            if (mantissa == 0 || exponent == 0) {
+                return value;
+            }
+            while (exponent < -22) {
+                value /= 1e22;
+                exponent += 22;
+            }
+            while (exponent > 22) {
+                value *= 1e22;
+                exponent -= 22;
+            }
+            return exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value
+                    * POWERS_OF_TEN[exponent];
+        }
+
+        // error describing the current byte which can't be part of a number
+        private NeuralNetworkException unexpected() {
+            if (c < 0) {
+                return new NeuralNetworkException(
+                        "Unexpected end of file on line " + line + ".");
+            }
+            if (c >= 0x80) {
+                return new NeuralNetworkException(
+                        "Non-ASCII character on line " + line
+                                + " of samples.");
+            }
+            return new NeuralNetworkException("Unexpected character '"
+                    + (char) c + "' on line " + line + " of samples.");
+        }
+
+        private void skipWhitespace() throws IOException {
+            while (c >= 0 && isWhitespace(c)) {
+                if (c == '\n') {
+                    line++;
+                }
+                c = read();
+            }
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package neural_network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes samples to a file in one go. Samples are written to a temporary
+ * file next to the target, which replaces the target atomically on
+ * {@link #close()}, so readers see either the old or the complete new file.
+ * When appending, samples already in the target are copied to the temporary
+ * file channel to channel, without parsing them.
+ * 
+ * Text files get one sample per line, preceded by a line break like the
+ * files written before, numbers are formatted straight into one reused
+ * buffer. Binary files use the format of {@link SampleLoader}, their
+ * samples are kept in memory until the file is closed since the header
+ * holds the number of samples. Appending to a binary file copies the old
+ * inputs, then the new inputs, the old expected outputs and the new expected
+ * outputs.
+ */
+public class SampleWriter implements Closeable {
+    // characters formatted before they are written
+    private static final int TEXT_BUFFER = 1 << 16;
+
+    private final Path target;
+    // temporary file replacing the target
+    private Path tmp;
+    private final int inputs;
+    private final int outputs;
+    private final boolean binary;
+    private final boolean append;
+    // text output
+    private FileChannel channel;
+    private final StringBuilder text = new StringBuilder(TEXT_BUFFER);
+    private ByteBuffer bytes;
+    // binary output
+    private double[] x;
+    private double[] t;
+    private int rows;
+    private boolean closed;
+    // samples reached the target, abort has nothing to discard any more
+    private boolean committed;
+
+    /**
+     * Opens the writer.
+     * 
+     * @param file
+     *            Target file
+     * @param inputs
+     *            Number of inputs per sample
+     * @param outputs
+     *            Number of expected outputs per sample
+     * @param append
+     *            If samples are added to the samples already in the file
+     * @param binary
+     *            If the file is written in the binary format
+     * @throws IOException
+     *             If the temporary file can't be created or the target file
+     *             can't be copied to it
+     */
+    public SampleWriter(String file, int inputs, int outputs, boolean append,
+            boolean binary) throws IOException {
+        this.target = Paths.get(file).toAbsolutePath();
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.append = append && Files.exists(target);
+        this.binary = binary;
+        if (binary) {
+            x = new double[16 * inputs];
+            t = new double[16 * outputs];
+            return;
+        }
+        tmp = Files.createTempFile(target.getParent(), "samples", ".tmp");
+        try {
+            channel = FileChannel.open(tmp, StandardOpenOption.WRITE);
+            if (this.append) {
+                try (FileChannel source = FileChannel.open(target,
+                        StandardOpenOption.READ)) {
+                    transfer(source, 0, source.size(), channel);
+                }
+            }
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+        bytes = ByteBuffer.allocateDirect(TEXT_BUFFER);
+    }
+
+    /**
+     * Adds one sample.
+     * 
+     * @param input
+     *            Array holding inputs of the sample
+     * @param inputOffset
+     *            Index of the first input
+     * @param output
+     *            Array holding expected outputs of the sample
+     * @param outputOffset
+     *            Index of the first expected output
+     * @throws IOException
+     *             If the sample can't be written
+     */
+    public void write(double[] input, int inputOffset, double[] output,
+            int outputOffset) throws IOException {
+        if (binary) {
+            if ((rows + 1) * inputs > x.length) {
+                x = Arrays.copyOf(x, 2 * x.length);
+                t = Arrays.copyOf(t, 2 * t.length);
+            }
+            System.arraycopy(input, inputOffset, x, rows * inputs, inputs);
+            System.arraycopy(output, outputOffset, t, rows * outputs,
+                    outputs);
+            rows++;
+            return;
+        }
+        text.append('\n');
+        for (int i = 0; i < inputs; i++) {
+            text.append(' ').append(input[inputOffset + i]);
+        }
+        for (int j = 0; j < outputs; j++) {
+            double value = output[outputOffset + j];
+            text.append(' ');
+            // class indicators stay integers like in hand-written files
+            if (value == (long) value) {
+                text.append((long) value);
+            } else {
+                text.append(value);
+            }
+        }
+        if (text.length() >= TEXT_BUFFER / 2) {
+            flushText();
+        }
+    }
+
+    /**
+     * Adds one classification sample.
+     * 
+     * @param input
+     *            Inputs of the sample
+     * @param label
+     *            Index of the sample's class, its expected output is 1 and
+     *            the other outputs are 0
+     * @throws IOException
+     *             If the sample can't be written
+     */
+    public void write(double[] input, int label) throws IOException {
+        double[] output = new double[outputs];
+        output[label] = 1;
+        write(input, 0, output, 0);
+    }
+
+    // encodes formatted characters, all of them ASCII, and writes them
+    private void flushText() throws IOException {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            bytes.clear();
+            int end = Math.min(length, i + bytes.capacity());
+            for (; i < end; i++) {
+                bytes.put((byte) text.charAt(i));
+            }
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        text.setLength(0);
+    }
+
+    /**
+     * Writes the remaining samples and replaces the target file. If writing
+     * fails, the target file is left as it was.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (binary) {
+                if (append) {
+                    appendBinary();
+                } else {
+                    // writes through its own temporary file
+                    SampleLoader.saveBinary(new Dataset(x, t, rows, inputs,
+                            outputs), target.toString());
+                }
+                committed = true;
+                return;
+            }
+            flushText();
+            channel.force(true);
+            channel.close();
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    // writes the samples already in the target file and the new ones to a
+    // temporary file, which replaces the target
+    private void appendBinary() throws IOException {
+        tmp = Files.createTempFile(target.getParent(), "samples", ".tmp");
+        try (FileChannel source = FileChannel.open(target,
+                StandardOpenOption.READ);
+                FileChannel file = FileChannel.open(tmp,
+                        StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(SampleLoader.HEADER_SIZE);
+            read(source, header, 0);
+            header.flip();
+            int oldRows;
+            try {
+                oldRows = SampleLoader.readHeader(header, inputs, outputs);
+            } catch (NeuralNetworkException e) {
+                throw new IOException(e.getMessage());
+            }
+            long size = source.size();
+            long outputsStart = SampleLoader.HEADER_SIZE + 8L * oldRows
+                    * inputs;
+            if (size != outputsStart + 8L * oldRows * outputs) {
+                throw new IOException("Dataset file doesn't match its header.");
+            }
+            if ((long) oldRows + rows > Integer.MAX_VALUE) {
+                throw new IOException("Dataset file is too large to append.");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            SampleLoader.write(file, SampleLoader.header(oldRows + rows,
+                    inputs, outputs));
+            transfer(source, SampleLoader.HEADER_SIZE, outputsStart, file);
+            SampleLoader.writeDoubles(file, buffer, x, rows * inputs);
+            transfer(source, outputsStart, size, file);
+            SampleLoader.writeDoubles(file, buffer, t, rows * outputs);
+            file.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // copies bytes from start to end of the source to the end of the target
+    private static void transfer(FileChannel source, long start, long end,
+            FileChannel target) throws IOException {
+        long position = start;
+        while (position < end) {
+            long n = source.transferTo(position, end - position, target);
+            if (n <= 0 && position >= source.size()) {
+                throw new IOException("Unexpected end of dataset file.");
+            }
+            position += n;
+        }
+    }
+
+    private static void read(FileChannel file, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = file.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of dataset file.");
+            }
+        }
+    }
+
+    /**
+     * Discards written samples, the target file is left as it was. Does
+     * nothing after the writer was closed successfully.
+     */
+    public void abort() {
+        if (committed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (tmp != null) {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            System.out.println("Can't delete " + tmp + ": " + e.getMessage());
+        }
+    }
+}
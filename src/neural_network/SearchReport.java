@@ -0,0 +1,78 @@
+package neural_network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Trials of a hyperparameter search, best first. Trials that trained more
+ * epochs rank before pruned ones, trials with the same number of epochs are
+ * ranked by validation error and then by time to the target error. Diverged
+ * trials are last.
+ */
+public class SearchReport {
+    private final List<TrialResult> results;
+    private final long elapsedMillis;
+
+    SearchReport(List<TrialResult> results, long elapsedMillis) {
+        this.results = new ArrayList<TrialResult>(results);
+        Collections.sort(this.results, new Comparator<TrialResult>() {
+            @Override
+            public int compare(TrialResult a, TrialResult b) {
+                boolean aDiverged = Double.isNaN(a.getValidationError());
+                boolean bDiverged = Double.isNaN(b.getValidationError());
+                if (aDiverged != bDiverged) {
+                    return aDiverged ? 1 : -1;
+                }
+                if (a.getEpochs() != b.getEpochs()) {
+                    return b.getEpochs() - a.getEpochs();
+                }
+                int c = Double.compare(a.getValidationError(),
+                        b.getValidationError());
+                if (c != 0) {
+                    return c;
+                }
+                return Long.compare(timeToTarget(a), timeToTarget(b));
+            }
+        });
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    private static long timeToTarget(TrialResult result) {
+        long millis = result.getTimeToTargetMillis();
+        return millis < 0 ? Long.MAX_VALUE : millis;
+    }
+
+    /**
+     * @return Trials, best first
+     */
+    public List<TrialResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return Best trial or null if there were no trials
+     */
+    public TrialResult getBest() {
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * @return Time the whole search took
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(results.size()).append(" trials in ").append(elapsedMillis)
+                .append(" ms\n");
+        for (int i = 0; i < results.size(); i++) {
+            sb.append(i + 1).append(". ").append(results.get(i)).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package neural_network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Values of hyperparameters searched by {@link HyperparameterSearch}. Grid
+ * search tries every combination, random search draws the architecture,
+ * batch size, algorithm and optimizer from the given values and the
+ * learning rate log-uniformly between the smallest and the largest given
+ * rate.
+ */
+public class SearchSpace {
+    private final String[] architectures;
+    private final double[] learningRates;
+    private final int[] batchSizes;
+    private final int[] algorithms;
+    private final String[] optimizers;
+
+    public SearchSpace(String[] architectures, double[] learningRates,
+            int[] batchSizes, int[] algorithms, String[] optimizers) {
+        if (architectures.length == 0 || learningRates.length == 0
+                || batchSizes.length == 0 || algorithms.length == 0
+                || optimizers.length == 0) {
+            throw new IllegalArgumentException(
+                    "Every hyperparameter needs at least one value.");
+        }
+        this.architectures = architectures.clone();
+        this.learningRates = learningRates.clone();
+        this.batchSizes = batchSizes.clone();
+        this.algorithms = algorithms.clone();
+        this.optimizers = optimizers.clone();
+    }
+
+    /**
+     * @return Every combination of the values, batch sizes are combined
+     *         only with mini-batch backpropagation
+     */
+    public List<Hyperparameters> grid() {
+        List<Hyperparameters> grid = new ArrayList<Hyperparameters>();
+        for (String architecture : architectures) {
+            for (double learningRate : learningRates) {
+                for (int algorithm : algorithms) {
+                    for (String optimizer : optimizers) {
+                        int sizes = algorithm == 2 ? batchSizes.length : 1;
+                        for (int b = 0; b < sizes; b++) {
+                            grid.add(new Hyperparameters(architecture,
+                                    learningRate, batchSizes[b], algorithm,
+                                    optimizer));
+                        }
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * @param random
+     *            Source of randomness
+     * @return Randomly chosen hyperparameters
+     */
+    public Hyperparameters sample(Random random) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = 0;
+        for (double learningRate : learningRates) {
+            min = Math.min(min, learningRate);
+            max = Math.max(max, learningRate);
+        }
+        double learningRate = min * Math.exp(random.nextDouble()
+                * Math.log(max / min));
+        return new Hyperparameters(
+                architectures[random.nextInt(architectures.length)],
+                learningRate, batchSizes[random.nextInt(batchSizes.length)],
+                algorithms[random.nextInt(algorithms.length)],
+                optimizers[random.nextInt(optimizers.length)]);
+    }
+}
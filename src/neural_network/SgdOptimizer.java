@@ -0,0 +1,24 @@
+package neural_network;
+
+/**
+ * Plain gradient descent, every step moves weights by the learning rate times
+ * the corrections.
+ */
+public class SgdOptimizer extends Optimizer {
+    @Override
+    double update(int p, double[] params, double[] corrections, double lr) {
+        double squares = 0;
+        for (int i = 0; i < params.length; i++) {
+            double d = lr * corrections[i];
+            params[i] += d;
+            corrections[i] = 0;
+            squares += d * d;
+        }
+        return squares;
+    }
+
+    @Override
+    boolean direct() {
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package neural_network;
+
+/**
+ * Sigmoid computed with {@link Math#exp(double)}, exact to a few ulps.
+ * Approximations of the sigmoid extend this class and use its derivative at
+ * the approximated output.
+ */
+public class SigmoidActivation implements Activation {
+    @Override
+    public double apply(double net) {
+        return 1.0 / (1.0 + Math.exp(-net));
+    }
+
+    @Override
+    public double derivative(double y) {
+        return y * (1 - y);
+    }
+}
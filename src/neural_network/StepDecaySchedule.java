@@ -0,0 +1,29 @@
+package neural_network;
+
+/**
+ * Multiplies the learning rate by a factor every few epochs.
+ */
+public class StepDecaySchedule implements LearningRateSchedule {
+    private final double factor;
+    private final int epochs;
+
+    /**
+     * @param factor
+     *            Factor the learning rate is multiplied by, between 0 and 1
+     * @param epochs
+     *            Number of epochs between two decays
+     */
+    public StepDecaySchedule(double factor, int epochs) {
+        if (epochs < 1) {
+            throw new IllegalArgumentException(
+                    "Number of epochs should be at least 1.");
+        }
+        this.factor = factor;
+        this.epochs = epochs;
+    }
+
+    @Override
+    public double rate(double lr, int epoch) {
+        return lr * Math.pow(factor, epoch / epochs);
+    }
+}
@@ -0,0 +1,75 @@
+package neural_network;
+
+/**
+ * Norms of corrections and weight updates of optimizer steps, collected
+ * while metrics are enabled. Asynchronous training updates them from
+ * several threads without locking, so they are only approximate there.
+ */
+class StepStats {
+    // sums of per-step norms of every layer
+    private final double[] gradientNorms;
+    private final double[] updateNorms;
+    private int steps;
+
+    StepStats(FlatNetwork net) {
+        int layers = net.w.length;
+        gradientNorms = new double[layers];
+        updateNorms = new double[layers];
+    }
+
+    // adds squared norms of the raw corrections and of the weight changes
+    // of layer k in the current step
+    void add(int k, double gradientSquares, double updateSquares) {
+        gradientNorms[k] += Math.sqrt(gradientSquares);
+        updateNorms[k] += Math.sqrt(updateSquares);
+    }
+
+    void endStep() {
+        steps++;
+    }
+
+    /**
+     * Adds the step of a single sample whose corrections were added directly
+     * to the weights. Correction of weight i of neuron j is error of j times
+     * input i and of its bias just error of j, so norms follow from the
+     * workspace without looking at the weights.
+     *
+     * @param ws
+     *            Workspace of the sample
+     * @param lr
+     *            Learning rate the corrections were multiplied with
+     */
+    void directStep(Workspace ws, double lr) {
+        for (int k = 0; k < gradientNorms.length; k++) {
+            double gradient = squares(ws.error[k + 1])
+                    * (squares(ws.y[k]) + 1);
+            add(k, gradient, lr * lr * gradient);
+        }
+        endStep();
+    }
+
+    double[] meanGradientNorms() {
+        return mean(gradientNorms);
+    }
+
+    double[] meanUpdateNorms() {
+        return mean(updateNorms);
+    }
+
+    private double[] mean(double[] sums) {
+        double[] mean = new double[sums.length];
+        for (int k = 0; k < sums.length; k++) {
+            mean[k] = steps == 0 ? 0 : sums[k] / steps;
+        }
+        return mean;
+    }
+
+    // sum of squares
+    static double squares(double[] a) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * a[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,23 @@
+package neural_network;
+
+/**
+ * Reason why training stopped.
+ */
+public enum StopReason {
+    // error dropped below the minimum error
+    MIN_ERROR,
+    // maximum number of epochs was trained
+    MAX_EPOCHS,
+    // time budget ran out
+    TIME_BUDGET,
+    // validation error stopped improving
+    EARLY_STOPPING,
+    // error is no longer a finite number, the learning rate is too high
+    DIVERGED,
+    // training was cancelled, the model is not replaced
+    CANCELLED,
+    // model was replaced while fine-tuning, the fine-tuned one is discarded
+    MODEL_CHANGED,
+    // network or samples could not be loaded
+    FAILED
+}
@@ -0,0 +1,214 @@
+package neural_network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Trains on a binary sample file (see {@link SampleLoader}) without loading
+ * it whole. Every epoch reads the file chunk by chunk, a background thread
+ * reads the next chunk while the current one trains. Chunks are visited in a
+ * new random order every epoch and samples are shuffled within their chunk.
+ * Memory used depends only on the chunk size.
+ */
+class StreamingTrainer implements Closeable {
+    private final FlatNetwork net;
+    private final FileChannel channel;
+    private final int rows;
+    private final int inputs;
+    private final int outputs;
+    private final int chunkRows;
+    // chunk being trained and chunk being read
+    private final double[][] x = new double[2][];
+    private final double[][] t = new double[2][];
+    private final Dataset[] chunk = new Dataset[2];
+    // used only by the reader thread
+    private final ByteBuffer buffer;
+    private final ExecutorService reader;
+    private final Workspace ws;
+    private final int[] order;
+    // indexes of chunks in the order of the current epoch
+    private final int[] chunks;
+    private final Random random;
+
+    StreamingTrainer(FlatNetwork net, String file, int chunkRows,
+            Random random) throws IOException, NeuralNetworkException {
+        if (chunkRows < 1) {
+            throw new NeuralNetworkException(
+                    "Chunk should have at least one sample.");
+        }
+        this.net = net;
+        this.inputs = net.inputSize();
+        this.outputs = net.outputSize();
+        this.random = random;
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer
+                    .allocate(SampleLoader.HEADER_SIZE);
+            readFully(header, 0);
+            header.flip();
+            rows = SampleLoader.readHeader(header, inputs, outputs);
+            long size = SampleLoader.HEADER_SIZE + 8L * rows
+                    * (inputs + outputs);
+            if (size != channel.size()) {
+                throw new NeuralNetworkException(
+                        "Dataset file doesn't match its header.");
+            }
+        } catch (IOException | NeuralNetworkException e) {
+            channel.close();
+            throw e;
+        }
+        // chunks larger than the file would only waste memory
+        this.chunkRows = Math.min(chunkRows, Math.max(rows, 1));
+        chunks = new int[(rows + this.chunkRows - 1) / this.chunkRows];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = i;
+        }
+        for (int i = 0; i < 2; i++) {
+            x[i] = new double[this.chunkRows * inputs];
+            t[i] = new double[this.chunkRows * outputs];
+            chunk[i] = new Dataset(x[i], t[i], this.chunkRows, inputs,
+                    outputs);
+        }
+        buffer = ByteBuffer.allocateDirect(8 * this.chunkRows
+                * Math.max(inputs, outputs));
+        order = new int[this.chunkRows];
+        ws = net.newWorkspace();
+        reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sample-reader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    Workspace workspace() {
+        return ws;
+    }
+
+    /**
+     * Runs one epoch over all samples of the file.
+     *
+     * @param lr
+     *            Learning rate
+     * @param stohastic
+     *            If weights are corrected after each sample
+     * @param batchSize
+     *            Number of samples whose corrections are accumulated before
+     *            they are applied, ignored if stohastic
+     * @return Sum of squared errors of all samples
+     * @throws NeuralNetworkException
+     *             If the file can't be read
+     */
+    double epoch(double lr, boolean stohastic, int batchSize)
+            throws NeuralNetworkException {
+        double sumE = 0;
+        if (chunks.length == 0) {
+            return sumE;
+        }
+        int sampleIndex = 0;
+        shuffle(chunks, chunks.length);
+        Future<Integer> next = readAsync(chunks[0] * chunkRows, 0);
+        for (int i = 0, c = 0; i < chunks.length; i++, c ^= 1) {
+            int n = await(next);
+            if (i + 1 < chunks.length) {
+                next = readAsync(chunks[i + 1] * chunkRows, c ^ 1);
+            }
+            for (int r = 0; r < n; r++) {
+                order[r] = r;
+            }
+            shuffle(order, n);
+            sumE += net.train(ws, chunk[c], order, 0, n, sampleIndex, lr,
+                    stohastic, batchSize);
+            sampleIndex += n;
+        }
+        return sumE;
+    }
+
+    // shuffles the first n indexes
+    private void shuffle(int[] indexes, int n) {
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = tmp;
+        }
+    }
+
+    private Future<Integer> readAsync(final int from, final int c) {
+        return reader.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                return readChunk(from, c);
+            }
+        });
+    }
+
+    private int await(Future<Integer> chunk) throws NeuralNetworkException {
+        try {
+            return chunk.get();
+        } catch (ExecutionException e) {
+            throw new NeuralNetworkException("Can't read samples: "
+                    + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException(
+                    "Interrupted while reading samples.");
+        }
+    }
+
+    // reads samples from the given row into chunk c, returns number of read
+    // samples
+    private int readChunk(int from, int c) throws IOException {
+        int n = Math.min(chunkRows, rows - from);
+        long header = SampleLoader.HEADER_SIZE;
+        readDoubles(header + 8L * from * inputs, x[c], n * inputs);
+        readDoubles(header + 8L * rows * inputs + 8L * from * outputs, t[c],
+                n * outputs);
+        return n;
+    }
+
+    private void readDoubles(long position, double[] target, int length)
+            throws IOException {
+        buffer.clear();
+        buffer.limit(8 * length);
+        readFully(buffer, position);
+        buffer.flip();
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        doubles.get(target, 0, length);
+    }
+
+    private void readFully(ByteBuffer target, long position)
+            throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.shutdownNow();
+        channel.close();
+    }
+}
@@ -0,0 +1,120 @@
+package neural_network;
+
+import java.util.Random;
+
+/**
+ * Trains a network serially on some rows of a dataset. Rows are given by
+ * their indexes, so many trainers can share one dataset without copying it,
+ * the dataset is only read.
+ */
+class SubsetTrainer {
+    private final FlatNetwork net;
+    private final Dataset samples;
+    private final Workspace ws;
+    private final boolean stohastic;
+    private final int batchSize;
+    private final Random random;
+    // indexes of the trained rows in the order of the next epoch
+    private final int[] order;
+
+    /**
+     * @param net
+     *            Network trained in place
+     * @param samples
+     *            Dataset shared with other trainers
+     * @param rows
+     *            Indexes of the rows to train on, the array is not modified
+     * @param stohastic
+     *            If weights are corrected after every sample
+     * @param batchSize
+     *            Number of samples of one weight update, ignored if
+     *            stohastic
+     * @param random
+     *            Shuffles the rows every epoch, unless one batch holds all
+     *            of them
+     */
+    SubsetTrainer(FlatNetwork net, Dataset samples, int[] rows,
+            boolean stohastic, int batchSize, Random random) {
+        this.net = net;
+        this.samples = samples;
+        this.ws = net.newWorkspace();
+        this.stohastic = stohastic;
+        this.batchSize = batchSize;
+        this.random = random;
+        this.order = rows.clone();
+    }
+
+    FlatNetwork network() {
+        return net;
+    }
+
+    /**
+     * Trains one epoch over the rows.
+     *
+     * @param lr
+     *            Learning rate
+     * @return Mean error of the rows during the epoch
+     */
+    double epoch(double lr) {
+        if (stohastic || batchSize < order.length) {
+            shuffle();
+        }
+        double sumE = net.train(ws, samples, order, 0, order.length, 0, lr,
+                stohastic, batchSize);
+        return net.meanError(sumE, order.length);
+    }
+
+    private void shuffle() {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+    }
+
+    /**
+     * @param rows
+     *            Indexes of rows of the dataset
+     * @return Mean error of the current weights on the rows
+     */
+    double error(int[] rows) {
+        double sumE = 0;
+        for (int s : rows) {
+            net.forward(ws, samples.x, samples.inputOffset(s));
+            sumE += net.error(ws, samples.t, samples.outputOffset(s));
+        }
+        return net.meanError(sumE, rows.length);
+    }
+
+    /**
+     * @param row
+     *            Index of a row of the dataset
+     * @return Index of the class the current weights recognize in the row
+     */
+    int classify(int row) {
+        double[] o = net.forward(ws, samples.x, samples.inputOffset(row));
+        int maxIndex = 0;
+        for (int i = 1; i < o.length; i++) {
+            if (o[i] > o[maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    /**
+     * @param rows
+     *            Indexes of rows of the dataset
+     * @return Part of the rows whose class is recognized correctly
+     */
+    double accuracy(int[] rows) {
+        int correct = 0;
+        for (int s : rows) {
+            if (classify(s) == samples.label(s)) {
+                correct++;
+            }
+        }
+        return (double) correct / rows.length;
+    }
+}
@@ -0,0 +1,16 @@
+package neural_network;
+
+/**
+ * Hyperbolic tangent, outputs are in (-1, 1).
+ */
+public class TanhActivation implements Activation {
+    @Override
+    public double apply(double net) {
+        return Math.tanh(net);
+    }
+
+    @Override
+    public double derivative(double y) {
+        return 1 - y * y;
+    }
+}
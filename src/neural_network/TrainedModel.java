@@ -0,0 +1,122 @@
+package neural_network;
+
+/**
+ * Immutable snapshot of a trained network. Weights are copied when the
+ * snapshot is taken and never change afterwards, every thread runs its
+ * passes in its own buffers, so one model can serve any number of threads
+ * without locking.
+ */
+public class TrainedModel implements InferenceModel {
+    // never modified after construction
+    private final FlatNetwork net;
+    // number of points in gesture representation
+    private final int M;
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return net.newWorkspace();
+        }
+    };
+    private final ThreadLocal<BatchWorkspace> batchWorkspace = new ThreadLocal<BatchWorkspace>() {
+        @Override
+        protected BatchWorkspace initialValue() {
+            return new BatchWorkspace(net.sizes);
+        }
+    };
+
+    // the network must not be changed by the caller afterwards
+    TrainedModel(FlatNetwork net, int M) {
+        this.net = net;
+        this.M = M;
+    }
+
+    FlatNetwork network() {
+        return net;
+    }
+
+    /**
+     * Creates model with the same weights that computes outputs of neurons
+     * with another transfer function, for example a faster approximation of
+     * the one the model was trained with.
+     * 
+     * @param activation
+     *            Transfer function used for inference
+     * @return Model sharing weights with this model
+     */
+    public TrainedModel withActivation(Activation activation) {
+        return new TrainedModel(net.withActivation(activation), M);
+    }
+
+    /**
+     * @return Single precision copy of the model
+     */
+    public FloatModel toFloatModel() {
+        return new FloatModel(net, M);
+    }
+
+    /**
+     * @return 8-bit quantized copy of the model
+     */
+    public QuantizedModel quantize() {
+        return new QuantizedModel(net, M);
+    }
+
+    @Override
+    public int getM() {
+        return M;
+    }
+
+    @Override
+    public int inputSize() {
+        return net.inputSize();
+    }
+
+    @Override
+    public int outputSize() {
+        return net.outputSize();
+    }
+
+    /**
+     * Recognizes gesture given as network input.
+     * 
+     * @param x
+     *            Gesture representation x1 y1 x2 y2 ... of length 2*M
+     * @param output
+     *            Array of output layer's size that receives the network's
+     *            output, may be null
+     * @return Index of the recognized gesture, 0 for alpha to 4 for epsilon
+     */
+    @Override
+    public int infer(double[] x, double[] output) {
+        double[] result = net.forward(workspace.get(), x);
+        int maxIndex = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] > result[maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        if (output != null) {
+            System.arraycopy(result, 0, output, 0, result.length);
+        }
+        return maxIndex;
+    }
+
+    /**
+     * Recognizes a batch of gestures.
+     * 
+     * @param inputs
+     *            Gesture representations x1 y1 x2 y2 ..., 2*M values per row
+     * @param rows
+     *            Number of gestures
+     * @param classes
+     *            Receives index of the recognized gesture for every row
+     * @param probabilities
+     *            Receives probabilities of the gestures, row after row, may
+     *            be null
+     */
+    public void inferBatch(double[] inputs, int rows, int[] classes,
+            double[] probabilities) {
+        double[] result = net.forwardBatch(batchWorkspace.get(), inputs, rows);
+        NeuralNetwork.classify(net, result, rows, classes, probabilities);
+    }
+}
@@ -0,0 +1,73 @@
+package neural_network;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Training running on its own thread, see
+ * {@link NeuralNetwork#trainAsync(String, String, String, String, String, int)}.
+ */
+public class TrainingJob {
+    private final AtomicBoolean cancelled;
+    private final FutureTask<TrainingProgress> task;
+
+    TrainingJob(AtomicBoolean cancelled, Callable<TrainingProgress> training) {
+        this.cancelled = cancelled;
+        this.task = new FutureTask<TrainingProgress>(training);
+    }
+
+    void start() {
+        Thread thread = new Thread(task, "training");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // runs the training on the calling thread instead of starting one
+    TrainingProgress run() {
+        task.run();
+        try {
+            return await();
+        } catch (InterruptedException e) {
+            // the task is done, so await doesn't wait
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Asks the training to stop after the current epoch. The model is not
+     * replaced by a cancelled training.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public boolean isDone() {
+        return task.isDone();
+    }
+
+    /**
+     * Waits until the training stops.
+     *
+     * @return Final state of the training
+     * @throws InterruptedException
+     *             If the waiting thread is interrupted
+     */
+    public TrainingProgress await() throws InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package neural_network;
+
+/**
+ * Receives progress of a training. Methods are called on the training
+ * thread, so they should return quickly, user interfaces should hand the
+ * progress over to their own thread.
+ */
+public interface TrainingListener {
+    /**
+     * Called after an epoch, at most once per progress interval.
+     *
+     * @param progress
+     *            State after the epoch
+     */
+    void progress(TrainingProgress progress);
+
+    /**
+     * Called once when training stops, for any reason.
+     *
+     * @param progress
+     *            Final state, its stop reason is set
+     */
+    void finished(TrainingProgress progress);
+}
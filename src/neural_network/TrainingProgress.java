@@ -0,0 +1,67 @@
+package neural_network;
+
+/**
+ * State of a training after an epoch.
+ */
+public class TrainingProgress {
+    private final int epoch;
+    private final double error;
+    private final double validationError;
+    private final long elapsedMillis;
+    private final StopReason stopReason;
+
+    TrainingProgress(int epoch, double error, double validationError,
+            long elapsedMillis, StopReason stopReason) {
+        this.epoch = epoch;
+        this.error = error;
+        this.validationError = validationError;
+        this.elapsedMillis = elapsedMillis;
+        this.stopReason = stopReason;
+    }
+
+    /**
+     * @return Number of trained epochs
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return Mean error on training samples in the last epoch, NaN if no
+     *         epoch was trained
+     */
+    public double getError() {
+        return error;
+    }
+
+    /**
+     * @return Mean error on validation samples after the last epoch, NaN
+     *         without early stopping
+     */
+    public double getValidationError() {
+        return validationError;
+    }
+
+    /**
+     * @return Time since the training started
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return Why training stopped or null while it is still running
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    @Override
+    public String toString() {
+        return "Epoch " + epoch + ", error " + error
+                + (Double.isNaN(validationError) ? ""
+                        : ", validation error " + validationError)
+                + ", " + elapsedMillis + " ms"
+                + (stopReason == null ? "" : ", stopped: " + stopReason);
+    }
+}
@@ -0,0 +1,92 @@
+package neural_network;
+
+/**
+ * Outcome of one training of a hyperparameter search.
+ */
+public class TrialResult {
+    private final Hyperparameters hyperparameters;
+    private final int epochs;
+    private final double error;
+    private final double validationError;
+    private final double accuracy;
+    private final long trainingMillis;
+    private final long timeToTargetMillis;
+    private final boolean pruned;
+
+    TrialResult(Hyperparameters hyperparameters, int epochs, double error,
+            double validationError, double accuracy, long trainingMillis,
+            long timeToTargetMillis, boolean pruned) {
+        this.hyperparameters = hyperparameters;
+        this.epochs = epochs;
+        this.error = error;
+        this.validationError = validationError;
+        this.accuracy = accuracy;
+        this.trainingMillis = trainingMillis;
+        this.timeToTargetMillis = timeToTargetMillis;
+        this.pruned = pruned;
+    }
+
+    public Hyperparameters getHyperparameters() {
+        return hyperparameters;
+    }
+
+    /**
+     * @return Number of trained epochs
+     */
+    public int getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * @return Mean error on training samples in the last epoch
+     */
+    public double getError() {
+        return error;
+    }
+
+    /**
+     * @return Mean error on validation samples, NaN if the training diverged
+     */
+    public double getValidationError() {
+        return validationError;
+    }
+
+    /**
+     * @return Part of validation samples recognized correctly
+     */
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return Time spent training, without waiting for a thread
+     */
+    public long getTrainingMillis() {
+        return trainingMillis;
+    }
+
+    /**
+     * @return Training time until the error first got below the target, -1
+     *         if it never did
+     */
+    public long getTimeToTargetMillis() {
+        return timeToTargetMillis;
+    }
+
+    /**
+     * @return If the search stopped the training before its full budget
+     */
+    public boolean isPruned() {
+        return pruned;
+    }
+
+    @Override
+    public String toString() {
+        return hyperparameters + ": validation error " + validationError
+                + ", accuracy " + String.format("%.3f", accuracy) + ", "
+                + epochs + " epochs in " + trainingMillis + " ms, target "
+                + (timeToTargetMillis < 0 ? "not reached"
+                        : "after " + timeToTargetMillis + " ms")
+                + (pruned ? ", pruned" : "");
+    }
+}
@@ -0,0 +1,72 @@
+package neural_network;
+
+import java.util.Random;
+
+/**
+ * Scheme used to set initial weights. Bias always starts at 0.
+ */
+public enum WeightInitialization {
+    /**
+     * Uniform from [0, 1), the original initialization. All weights are
+     * positive, which slows down training of deeper networks.
+     */
+    UNIFORM {
+        @Override
+        double next(Random random, int in, int out) {
+            return random.nextDouble();
+        }
+    },
+    /**
+     * Xavier (Glorot) uniform from [-a, a) with a = sqrt(6 / (in + out)),
+     * keeps the variance of outputs of sigmoid and tanh layers.
+     */
+    XAVIER {
+        @Override
+        double next(Random random, int in, int out) {
+            double limit = Math.sqrt(6.0 / (in + out));
+            return (2 * random.nextDouble() - 1) * limit;
+        }
+    },
+    /**
+     * He normal with standard deviation sqrt(2 / in), keeps the variance of
+     * outputs of relu layers.
+     */
+    HE {
+        @Override
+        double next(Random random, int in, int out) {
+            return random.nextGaussian() * Math.sqrt(2.0 / in);
+        }
+    },
+    /**
+     * He for relu and leaky relu layers, Xavier for the others.
+     */
+    AUTO {
+        @Override
+        double next(Random random, int in, int out) {
+            return XAVIER.next(random, in, out);
+        }
+    };
+
+    /**
+     * @param random
+     *            Source of randomness
+     * @param in
+     *            Size of the layer the weight comes from
+     * @param out
+     *            Size of the layer the weight goes to
+     * @return Initial weight
+     */
+    abstract double next(Random random, int in, int out);
+
+    // scheme used for a layer with the given transfer function
+    WeightInitialization forLayer(Activation activation) {
+        if (this != AUTO) {
+            return this;
+        }
+        if (activation instanceof ReluActivation
+                || activation instanceof LeakyReluActivation) {
+            return HE;
+        }
+        return XAVIER;
+    }
+}
@@ -0,0 +1,38 @@
+package neural_network;
+
+/**
+ * Preallocated per-sample buffers of the network. Forward and backward passes
+ * write only into the workspace, so a workspace is reused across samples
+ * and epochs without allocating. A workspace must not be shared between
+ * threads.
+ */
+class Workspace {
+    // outputs of neurons
+    final double[][] y;
+    // errors of neurons
+    final double[][] error;
+    // time spent by passes in every layer while metrics are enabled, null
+    // otherwise
+    long[] forwardNanos;
+    long[] backwardNanos;
+
+    Workspace(int[] sizes) {
+        y = new double[sizes.length][];
+        error = new double[sizes.length][];
+        for (int k = 0; k < sizes.length; k++) {
+            y[k] = new double[sizes[k]];
+            error[k] = new double[sizes[k]];
+        }
+    }
+
+    // turns timing of passes on, resetting the times, or off
+    void setTiming(boolean timing) {
+        int layers = y.length - 1;
+        forwardNanos = timing ? new long[layers] : null;
+        backwardNanos = timing ? new long[layers] : null;
+    }
+
+    double[] output() {
+        return y[y.length - 1];
+    }
+}
@@ -0,0 +1,177 @@
+package neural_network.gesture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes gesture representations of many strokes at once. Strokes are
+ * given in flat arrays, points of stroke s are xs[i], ys[i] for i from
+ * offsets[s] to offsets[s+1]. Every stroke is translated to its centroid,
+ * scaled to fit the [-1, 1] square and resampled to M points, its
+ * representation x1 y1 ... xM yM is written straight into a row of the
+ * feature matrix. No objects are created per point and the input arrays are
+ * never modified, so strokes are processed in parallel without copying.
+ */
+public class GesturePreprocessor {
+    // strokes processed by one task
+    private static final int STROKES_PER_TASK = 256;
+
+    // number of points in gesture representation
+    private final int M;
+
+    public GesturePreprocessor(int M) {
+        if (M < 2) {
+            throw new IllegalArgumentException(
+                    "Representation needs at least 2 points.");
+        }
+        this.M = M;
+    }
+
+    public int getM() {
+        return M;
+    }
+
+    /**
+     * Computes representations of all strokes in parallel.
+     * 
+     * @param xs
+     *            X coordinates of points of all strokes
+     * @param ys
+     *            Y coordinates of points of all strokes
+     * @param offsets
+     *            Index of the first point of every stroke followed by the
+     *            number of points, strokes + 1 values
+     * @return Feature matrix, row s holds the 2*M values of stroke s
+     */
+    public double[] representAll(double[] xs, double[] ys, int[] offsets) {
+        double[] features = new double[(offsets.length - 1) * 2 * M];
+        representAll(xs, ys, offsets, features, 0, ForkJoinPool.commonPool());
+        return features;
+    }
+
+    /**
+     * Computes representations of all strokes in parallel.
+     * 
+     * @param xs
+     *            X coordinates of points of all strokes
+     * @param ys
+     *            Y coordinates of points of all strokes
+     * @param offsets
+     *            Index of the first point of every stroke followed by the
+     *            number of points, strokes + 1 values
+     * @param features
+     *            Feature matrix receiving 2*M values per stroke
+     * @param row
+     *            Row of the feature matrix receiving the first stroke
+     * @param pool
+     *            Pool running the tasks
+     */
+    public void representAll(final double[] xs, final double[] ys,
+            final int[] offsets, final double[] features, final int row,
+            ForkJoinPool pool) {
+        int strokes = offsets.length - 1;
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+        for (int from = 0; from < strokes; from += STROKES_PER_TASK) {
+            final int start = from;
+            final int end = Math.min(from + STROKES_PER_TASK, strokes);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int s = start; s < end; s++) {
+                        represent(xs, ys, offsets[s], offsets[s + 1],
+                                features, (row + s) * 2 * M);
+                    }
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Computes representation of one stroke.
+     * 
+     * @param xs
+     *            X coordinates
+     * @param ys
+     *            Y coordinates
+     * @param from
+     *            Index of the first point of the stroke
+     * @param to
+     *            Index after the last point of the stroke
+     * @param out
+     *            Receives x1 y1 ... xM yM
+     * @param offset
+     *            Index of x1 in out
+     */
+    public void represent(double[] xs, double[] ys, int from, int to,
+            double[] out, int offset) {
+        if (to <= from) {
+            throw new IllegalArgumentException("Stroke has no points.");
+        }
+        int n = to - from;
+        // centroid
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = from; i < to; i++) {
+            sumX += xs[i];
+            sumY += ys[i];
+        }
+        double cx = sumX / n;
+        double cy = sumY / n;
+
+        // largest distance from the centroid along an axis
+        double max = 0;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, Math.max(Math.abs(xs[i] - cx),
+                    Math.abs(ys[i] - cy)));
+        }
+        // a single point stays in the centre
+        double scale = max == 0 ? 1 : max;
+
+        // length of the scaled stroke
+        double D = 0;
+        for (int i = from + 1; i < to; i++) {
+            D += distance((xs[i - 1] - cx) / scale, (ys[i - 1] - cy) / scale,
+                    (xs[i] - cx) / scale, (ys[i] - cy) / scale);
+        }
+
+        resample(xs, ys, from, to, cx, cy, scale, D, out, offset);
+    }
+
+    /**
+     * Picks M points of the scaled stroke. Point k is the last point, in
+     * stroke order, whose distance from the first point is at most k*D/(M-1),
+     * looking only from the point picked before.
+     */
+    void resample(double[] xs, double[] ys, int from, int to, double cx,
+            double cy, double scale, double D, double[] out, int offset) {
+        double startX = (xs[from] - cx) / scale;
+        double startY = (ys[from] - cy) / scale;
+        int i = from;
+        for (int k = 0; k < M; k++) {
+            double l = (k * D) / (M - 1);
+            while (i < to
+                    && distance(startX, startY, (xs[i] - cx) / scale,
+                            (ys[i] - cy) / scale) <= l) {
+                i++;
+            }
+            out[offset + 2 * k] = (xs[i - 1] - cx) / scale;
+            out[offset + 2 * k + 1] = (ys[i - 1] - cy) / scale;
+        }
+    }
+
+    // coordinates are small, so sqrt doesn't need the overflow protection
+    // of Math.hypot
+    static double distance(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
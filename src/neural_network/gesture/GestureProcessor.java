@@ -1,12 +1,12 @@
 package neural_network.gesture;
 
 import java.awt.Point;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import neural_network.SampleWriter;
+
 import static neural_network.NeuralNetworkUI.alpha;
 import static neural_network.NeuralNetworkUI.beta;
 import static neural_network.NeuralNetworkUI.gamma;
@@ -17,6 +17,7 @@ import static neural_network.NeuralNetworkUI.samplesFile;
 public class GestureProcessor {
     private HashMap<String, ArrayList<ArrayList<Point>>> gesturesMap = new HashMap<String, ArrayList<ArrayList<Point>>>();
     private final int M = 10;
+    private final GesturePreprocessor preprocessor = new GesturePreprocessor(M);
 
     public void addGesture(ArrayList<Point> g, String gestureId) {
         if (gestureId == null) {
@@ -30,134 +31,93 @@ public class GestureProcessor {
     }
 
     public ArrayList<DecimalPoint> getRepresentation(ArrayList<Point> g) {
-        DecimalPoint averagePoint = getAverage(g);
-        // System.out.println(averagePoint.x + " " + averagePoint.y);
-        ArrayList<DecimalPoint> locationFreeGesture = substract(g, averagePoint);
-        double m = getMaxDistanceFromZero(locationFreeGesture);
-        // System.out.println(m);
-        // scale gesture
-        locationFreeGesture = scale(locationFreeGesture, m);
-        return getGestureRepresentation(locationFreeGesture);
+        double[] representation = new double[2 * M];
+        representation(g, representation);
+        return toPoints(representation);
     }
 
-    private DecimalPoint getAverage(ArrayList<Point> g) {
-        double sumX = 0;
-        double sumY = 0;
-
-        for (Point p : g) {
-            sumX += p.x;
-            sumY += p.y;
-        }
-
-        return new DecimalPoint(sumX / g.size(), sumY / g.size());
+    /**
+     * Creates featurizer that computes representation of a stroke while it
+     * is drawn.
+     */
+    public StrokeFeaturizer newFeaturizer() {
+        return new StrokeFeaturizer(M);
     }
 
-    private ArrayList<DecimalPoint> substract(ArrayList<Point> g,
-            DecimalPoint average) {
-        ArrayList<DecimalPoint> translatedGesture = new ArrayList<DecimalPoint>();
-        for (Point p : g) {
-            DecimalPoint translated = new DecimalPoint(p.x -= average.x,
-                    p.y -= average.y);
-            translatedGesture.add(translated);
-        }
-
-        return translatedGesture;
+    /**
+     * Representation of the points added to the featurizer so far.
+     */
+    public ArrayList<DecimalPoint> getRepresentation(StrokeFeaturizer stroke) {
+        double[] representation = new double[2 * M];
+        stroke.represent(representation, 0);
+        return toPoints(representation);
     }
 
-    private double getMaxDistanceFromZero(ArrayList<DecimalPoint> g) {
-        double max = 0;
-        for (DecimalPoint p : g) {
-            double x = Math.abs(p.x);
-            double y = Math.abs(p.y);
-            max = Math.max(Math.max(x, y), max);
-        }
-        return max;
-    }
-
-    private ArrayList<DecimalPoint> scale(ArrayList<DecimalPoint> g,
-            double scalingFactor) {
-        for (DecimalPoint p : g) {
-            p.x /= scalingFactor;
-            p.y /= scalingFactor;
-        }
-        return g;
-    }
-
-    private ArrayList<DecimalPoint> getGestureRepresentation(
-            ArrayList<DecimalPoint> g) {
+    private ArrayList<DecimalPoint> toPoints(double[] representation) {
         ArrayList<DecimalPoint> gr = new ArrayList<DecimalPoint>();
-        double D = totalDistance(g);
-        // System.out.println("D: " + D);
-        DecimalPoint start = g.get(0);
-        int i = 0;
         for (int k = 0; k < M; k++) {
-            double l = (k * D) / (M - 1);
-            // System.out.println("l: " + l);
-            while (i < g.size() && start.distance(g.get(i)) <= l) {
-                i++;
-            }
-            gr.add(g.get(i - 1));
+            gr.add(new DecimalPoint(representation[2 * k],
+                    representation[2 * k + 1]));
         }
         return gr;
     }
 
-    private double totalDistance(ArrayList<DecimalPoint> points) {
-        double totalDistance = 0;
-        for (int i = 0; i < points.size() - 1; i++) {
-            totalDistance += points.get(i).distance(points.get(i + 1));
+    // computes representation x1 y1 ... xM yM of the gesture
+    private void representation(ArrayList<Point> g, double[] out) {
+        double[] xs = new double[g.size()];
+        double[] ys = new double[g.size()];
+        for (int i = 0; i < g.size(); i++) {
+            xs[i] = g.get(i).x;
+            ys[i] = g.get(i).y;
         }
-        return totalDistance;
+        preprocessor.represent(xs, ys, 0, g.size(), out, 0);
     }
 
     public void storeAllGesturesSamples() {
-        storeGesturesSamples(alpha);
-        storeGesturesSamples(beta);
-        storeGesturesSamples(gamma);
-        storeGesturesSamples(delta);
-        storeGesturesSamples(epsilon);
+        storeAllGesturesSamples(samplesFile, false);
     }
 
-    private void storeGesturesSamples(String gestureId) {
-        ArrayList<ArrayList<Point>> gestures = gesturesMap.get(gestureId);
-        if (gestures != null) {
-            for (ArrayList<Point> g : gestures) {
-                ArrayList<DecimalPoint> gr = getRepresentation(g);
-                store(gestureId, gr);
+    /**
+     * Appends representations of all added gestures to a sample file, the
+     * file is replaced atomically once all of them are written.
+     * 
+     * @param file
+     *            Sample file
+     * @param binary
+     *            If the file is in the binary format
+     */
+    public void storeAllGesturesSamples(String file, boolean binary) {
+        String[] gestureIds = { alpha, beta, gamma, delta, epsilon };
+        SampleWriter writer = null;
+        try {
+            writer = new SampleWriter(file, 2 * M, gestureIds.length, true,
+                    binary);
+            for (int label = 0; label < gestureIds.length; label++) {
+                storeGesturesSamples(writer, gestureIds[label], label);
+            }
+            writer.close();
+        } catch (IOException e) {
+            System.out.println(
+                    "Exception occured while trying to write the file " + file
+                            + ": " + e.getMessage());
+        } finally {
+            // discards the temporary file or appended samples unless the
+            // writer was closed successfully, also on runtime exceptions
+            if (writer != null) {
+                writer.abort();
             }
         }
     }
 
-    private void store(String gestureId, ArrayList<DecimalPoint> gr) {
-        try {
-            BufferedWriter out = new BufferedWriter(new FileWriter(samplesFile,
-                    true));
-            out.write("\n");
-            for (DecimalPoint p : gr) {
-                out.write(" " + p.x + " " + p.y);
-            }
-            switch (gestureId) {
-            case alpha:
-                out.write(" 1 0 0 0 0");
-                break;
-            case beta:
-                out.write(" 0 1 0 0 0");
-                break;
-            case gamma:
-                out.write(" 0 0 1 0 0");
-                break;
-            case delta:
-                out.write(" 0 0 0 1 0");
-                break;
-            case epsilon:
-                out.write(" 0 0 0 0 1");
-                break;
-            default:
-                break;
+    private void storeGesturesSamples(SampleWriter writer, String gestureId,
+            int label) throws IOException {
+        ArrayList<ArrayList<Point>> gestures = gesturesMap.get(gestureId);
+        if (gestures != null) {
+            double[] representation = new double[2 * M];
+            for (ArrayList<Point> g : gestures) {
+                representation(g, representation);
+                writer.write(representation, label);
             }
-            out.close();
-        } catch (IOException e) {
-            System.out
-                    .println("Exception occured while trying to open the file samples.txt.");
         }
     }
 }
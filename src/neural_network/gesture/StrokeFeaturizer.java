@@ -0,0 +1,164 @@
+package neural_network.gesture;
+
+/**
+ * Computes gesture representation while the stroke is drawn. Every added
+ * point updates the sums for the centroid, the bounds and the length of the
+ * stroke, so nothing has to be passed over again when the stroke ends. Points
+ * used for resampling are kept in a reservoir of fixed size, when it fills up
+ * every other point is dropped and from then on only every other point is
+ * added. Computing the representation therefore takes time proportional to M,
+ * no matter how long the stroke is.
+ *
+ * Centroid, scale and length are those of the whole stroke. Strokes that fit
+ * into the reservoir get the same representation as
+ * {@link GesturePreprocessor#represent}, longer strokes are resampled from
+ * evenly thinned points.
+ */
+public class StrokeFeaturizer {
+    // reservoir points per representation point
+    private static final int POINTS_PER_SAMPLE = 32;
+
+    private final GesturePreprocessor preprocessor;
+    // reservoir, one spare place for the last point of the stroke
+    private final double[] xs;
+    private final double[] ys;
+    private final int capacity;
+    // points in the reservoir
+    private int size;
+    // reservoir holds every stride-th point of the stroke
+    private long stride;
+    // points added to the stroke
+    private long count;
+    private double sumX;
+    private double sumY;
+    private double minX;
+    private double maxX;
+    private double minY;
+    private double maxY;
+    private double length;
+    private double lastX;
+    private double lastY;
+
+    public StrokeFeaturizer(int M) {
+        this(M, POINTS_PER_SAMPLE * M);
+    }
+
+    /**
+     * Creates featurizer with a reservoir of the given size.
+     *
+     * @param M
+     *            Number of points in gesture representation
+     * @param capacity
+     *            Number of points kept for resampling, at least M
+     */
+    public StrokeFeaturizer(int M, int capacity) {
+        if (capacity < M) {
+            throw new IllegalArgumentException(
+                    "Reservoir can't be smaller than the representation.");
+        }
+        preprocessor = new GesturePreprocessor(M);
+        this.capacity = capacity;
+        xs = new double[capacity + 1];
+        ys = new double[capacity + 1];
+        reset();
+    }
+
+    public int getM() {
+        return preprocessor.getM();
+    }
+
+    /**
+     * Number of points added since the stroke started.
+     */
+    public long points() {
+        return count;
+    }
+
+    /**
+     * Starts a new stroke.
+     */
+    public void reset() {
+        size = 0;
+        stride = 1;
+        count = 0;
+        sumX = 0;
+        sumY = 0;
+        length = 0;
+    }
+
+    /**
+     * Adds the next point of the stroke.
+     *
+     * @param x
+     *            X coordinate
+     * @param y
+     *            Y coordinate
+     */
+    public void add(double x, double y) {
+        if (count == 0) {
+            minX = maxX = x;
+            minY = maxY = y;
+        } else {
+            length += GesturePreprocessor.distance(lastX, lastY, x, y);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        sumX += x;
+        sumY += y;
+
+        if (count % stride == 0 && size == capacity) {
+            thin();
+        }
+        if (count % stride == 0) {
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+        lastX = x;
+        lastY = y;
+        count++;
+    }
+
+    // keeps every other point of the reservoir
+    private void thin() {
+        int kept = 0;
+        for (int j = 0; j < size; j += 2, kept++) {
+            xs[kept] = xs[j];
+            ys[kept] = ys[j];
+        }
+        size = kept;
+        stride *= 2;
+    }
+
+    /**
+     * Computes representation of the points added so far. The stroke isn't
+     * changed, so this can be called again after more points are added.
+     *
+     * @param out
+     *            Receives x1 y1 ... xM yM
+     * @param offset
+     *            Index of x1 in out
+     */
+    public void represent(double[] out, int offset) {
+        if (count == 0) {
+            throw new IllegalStateException("Stroke has no points.");
+        }
+        int n = size;
+        // resampling always ends at the last point of the stroke
+        if ((count - 1) % stride != 0) {
+            xs[n] = lastX;
+            ys[n] = lastY;
+            n++;
+        }
+        double cx = sumX / count;
+        double cy = sumY / count;
+        double max = Math.max(Math.max(maxX - cx, cx - minX),
+                Math.max(maxY - cy, cy - minY));
+        // a single point stays in the centre
+        double scale = max == 0 ? 1 : max;
+        preprocessor.resample(xs, ys, 0, n, cx, cy, scale, length / scale,
+                out, offset);
+    }
+}